@@ -40,4 +40,11 @@ public class ScoringRules {
     @JsonProperty("test-penalty")
     private String testPenalty = null;
 
+    /**
+     * Stop running the tests of a submit after the first one that does not succeed, the remaining tests are reported
+     * as skipped. Tests that failed most often in earlier attempts run first.
+     */
+    @JsonProperty("fail-fast")
+    private Boolean failFast = false;
+
 }
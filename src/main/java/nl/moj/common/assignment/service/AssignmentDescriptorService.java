@@ -1,6 +1,7 @@
 package nl.moj.common.assignment.service;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -27,9 +28,8 @@ public class AssignmentDescriptorService {
 
     public AssignmentDescriptor parseAssignmentDescriptor(Path descriptor) {
         AssignmentDescriptor ad;
-        try {
-            ad = yamlObjectMapper.readValue(Files.newInputStream(descriptor),
-                    AssignmentDescriptor.class);
+        try (InputStream in = Files.newInputStream(descriptor)) {
+            ad = yamlObjectMapper.readValue(in, AssignmentDescriptor.class);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -49,9 +49,4 @@ public class AsyncConfiguration {
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return (ex, method, params) -> log.error("Uncaught async error", ex);
     }
-
-    @Bean(name = "sequential")
-    public ExecutorService sequentialExecutor() {
-        return Executors.newFixedThreadPool(1, new NamedThreadFactory("sequential"));
-    }
 }
@@ -1,19 +1,24 @@
 package nl.moj.common.config;
 
+import javax.jms.ConnectionFactory;
+
+import org.springframework.boot.autoconfigure.jms.DefaultJmsListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.jms.annotation.EnableJms;
-import org.springframework.jms.support.converter.MappingJackson2MessageConverter;
-import org.springframework.jms.support.converter.MessageConverter;
-import org.springframework.jms.support.converter.MessageType;
+import org.springframework.jms.config.DefaultJmsListenerContainerFactory;
 
 import com.fasterxml.jackson.databind.MapperFeature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLMapper;
 import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 
+import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.messages.OperationMessageConverter;
+
 @Configuration
 @EnableJms
 public class CommonConfig {
@@ -34,12 +39,27 @@ public class CommonConfig {
                 .build();
     }
 
+    /**
+     * Listener containers for topics, every subscriber receives each message once.
+     */
+    @Bean
+    public DefaultJmsListenerContainerFactory topicListenerContainerFactory(ConnectionFactory connectionFactory,
+            DefaultJmsListenerContainerFactoryConfigurer configurer) {
+        DefaultJmsListenerContainerFactory factory = new DefaultJmsListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setPubSubDomain(true);
+        factory.setConcurrency("1");
+        return factory;
+    }
+
     @Bean
-    public MessageConverter jacksonJmsMessageConverter() {
-        MappingJackson2MessageConverter converter = new MappingJackson2MessageConverter();
-        converter.setTargetType(MessageType.TEXT);
-        converter.setTypeIdPropertyName("_type");
-        converter.setObjectMapper(jsonObjectMapper());
-        return converter;
+    public OperationMessageConverter jacksonJmsMessageConverter(MojServerProperties mojServerProperties) {
+        ObjectMapper cborObjectMapper = CBORMapper.builder()
+                .enable(MapperFeature.ACCEPT_CASE_INSENSITIVE_ENUMS)
+                .addModule(new JavaTimeModule())
+                .addModule(new Jdk8Module())
+                .build();
+        return new OperationMessageConverter(jsonObjectMapper(), cborObjectMapper,
+                mojServerProperties.getMessaging().getCompressThreshold().toBytes());
     }
 }
@@ -21,4 +21,8 @@ import lombok.Data;
 @Data
 public class Competition {
     private int successBonus = 400;
+    /**
+     * Ask the workers to prepare an assignment when it starts, if they were not asked to prepare it before.
+     */
+    private boolean prepareOnStart = true;
 }
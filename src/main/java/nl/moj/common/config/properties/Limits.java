@@ -50,6 +50,12 @@ public class Limits {
         private String lineTruncatedMessage = "...{truncated}";
         private String outputTruncMessage = "...{output truncated}";
         private String timeoutMessage = "...{terminated: time expired}";
+        private String outputLimitMessage = "...{terminated: output limit exceeded}";
 
+        /**
+         * The number of bytes of output a process may write, far more than the feedback limits show. A process
+         * writing more is stopped.
+         */
+        private Long maxOutputBytes = 1024L * 1024L;
     }
 }
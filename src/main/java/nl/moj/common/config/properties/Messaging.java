@@ -0,0 +1,27 @@
+package nl.moj.common.config.properties;
+
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+import nl.moj.common.messages.MessageCodec;
+
+@Data
+public class Messaging {
+
+    /**
+     * The codec the controller sends operation requests in, workers answer in the codec of the request. Workers that
+     * do not know a codec can not read its requests, only switch from json once all workers have been upgraded.
+     */
+    private MessageCodec codec = MessageCodec.JSON;
+
+    /**
+     * Binary message bodies larger than this are deflated.
+     */
+    private DataSize compressThreshold = DataSize.ofKilobytes(4);
+
+    /**
+     * Send team sources as unified diffs against the original assignment sources when that is smaller. Workers that
+     * do not know about diffs compile the diff itself, only enable this once all workers have been upgraded.
+     */
+    private boolean sourceDiffs = false;
+}
@@ -49,6 +49,10 @@ public class MojServerProperties {
     @NestedConfigurationProperty
     private Runtime runtime = new Runtime();
     @NestedConfigurationProperty
+    private Worker worker = new Worker();
+    @NestedConfigurationProperty
+    private Messaging messaging = new Messaging();
+    @NestedConfigurationProperty
     private Competition competition;
 
     public Path getDataDirectory() {
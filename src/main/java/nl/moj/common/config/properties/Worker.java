@@ -0,0 +1,157 @@
+package nl.moj.common.config.properties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.NestedConfigurationProperty;
+import org.springframework.util.unit.DataSize;
+
+import lombok.Data;
+
+@Data
+public class Worker {
+
+    @NestedConfigurationProperty
+    private Compiler compiler = new Compiler();
+    @NestedConfigurationProperty
+    private TestRunner testRunner = new TestRunner();
+    @NestedConfigurationProperty
+    private CompileCache compileCache = new CompileCache();
+    @NestedConfigurationProperty
+    private Workspace workspace = new Workspace();
+    @NestedConfigurationProperty
+    private ClassDataSharing classDataSharing = new ClassDataSharing();
+    @NestedConfigurationProperty
+    private Sequential sequential = new Sequential();
+    @NestedConfigurationProperty
+    private AssignmentCache assignmentCache = new AssignmentCache();
+
+    @Data
+    public static class Compiler {
+
+        /**
+         * The engine used to compile team sources. The in-process engine is only used for assignments
+         * targeting the Java version the worker itself runs on, other versions always fork javac.
+         */
+        private CompilerEngine engine = CompilerEngine.FORKED;
+
+        /**
+         * Compile the non-editable sources of an assignment once and only compile the editable sources of a team
+         * against those. Falls back to compiling all sources if the classes compiled from the editable sources do
+         * not match the signature of the original ones.
+         */
+        private boolean incremental = true;
+    }
+
+    @Data
+    public static class CompileCache {
+
+        /**
+         * Reuse the classes and compiler output of earlier compiles of exactly the same sources.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Where compile results are kept, defaults to cache/compile in the data directory.
+         */
+        private Path directory;
+
+        /**
+         * The maximum size of all kept compile results, least recently used results are removed first.
+         */
+        private DataSize maxSize = DataSize.ofMegabytes(256);
+    }
+
+    @Data
+    public static class AssignmentCache {
+
+        /**
+         * How long a downloaded assignment is used before checking with the controller whether it changed. The check
+         * is done in the background, requests keep using the cached assignment meanwhile.
+         */
+        private Duration revalidateAfter = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Sequential {
+
+        /**
+         * The maximum number of attempts of sequential assignments running at the same time. The compile and tests
+         * of a single attempt always run one after the other. Defaults to half the number of game threads, so their
+         * timings are not disturbed by a worker running at full capacity.
+         */
+        private Integer maxLanes;
+    }
+
+    @Data
+    public static class ClassDataSharing {
+
+        /**
+         * Generate class data sharing archives for forked javac and test JVMs, and start these with them. Needs at
+         * least Java 13, older versions are started without.
+         */
+        private boolean enabled = true;
+    }
+
+    @Data
+    public static class Workspace {
+
+        /**
+         * Where workspaces are created, for example a tmpfs like /dev/shm. Defaults to the system temp directory.
+         */
+        private Path directory;
+
+        /**
+         * The maximum size of all workspaces in the directory, workspaces are created in the fallback directory
+         * once it would be exceeded. No quota if not set.
+         */
+        private DataSize quota;
+
+        /**
+         * Where workspaces are created when the quota is reached, defaults to the system temp directory.
+         */
+        private Path fallbackDirectory;
+    }
+
+    @Data
+    public static class TestRunner {
+
+        /**
+         * How test JVMs are started. Pooled runners are started ahead of time and reused for multiple test runs,
+         * they need at least Java 17, for older versions a JVM is forked per test.
+         */
+        private TestRunnerMode mode = TestRunnerMode.FORKED;
+
+        /**
+         * The number of started, idle, runners kept per Java version and security profile.
+         */
+        private int poolSize = 2;
+
+        /**
+         * The number of test runs after which a runner is replaced.
+         */
+        private int maxRuns = 100;
+
+        /**
+         * Run all test classes of an attempt of a sequential assignment in one forked JVM, one after the other,
+         * instead of starting a JVM per class. Every class keeps its own timeout. Only applies to forked runs on at
+         * least Java 17.
+         */
+        private boolean batchSequential = false;
+
+        /**
+         * How long an idle runner is kept before it is stopped.
+         */
+        private Duration idleTimeout = Duration.ofMinutes(10);
+    }
+
+    public enum TestRunnerMode {
+        FORKED,
+        POOLED
+    }
+
+    public enum CompilerEngine {
+        FORKED,
+        IN_PROCESS
+    }
+}
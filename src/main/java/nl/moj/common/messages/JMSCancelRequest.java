@@ -0,0 +1,32 @@
+package nl.moj.common.messages;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * Published to all workers when the controller no longer needs the result of attempts. Workers skip these attempts
+ * if they did not start them yet and stop them if they are running.
+ */
+@Getter
+@Builder
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+@ToString
+public class JMSCancelRequest {
+
+    public static final String DESTINATION = "operation_cancel";
+
+    @JsonProperty("attempts")
+    private List<UUID> attempts;
+
+    @JsonProperty("reason")
+    private String reason;
+}
@@ -1,6 +1,8 @@
 package nl.moj.common.messages;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 
@@ -18,10 +20,33 @@ public class JMSFile {
         RESOURCE
     }
 
+    public enum Encoding {
+        /**
+         * The content is the file.
+         */
+        FULL,
+        /**
+         * The content is a unified diff against the original file of the assignment.
+         */
+        DIFF
+    }
+
     @JsonProperty("type")
     private Type type;
     @JsonProperty("path")
     private String path;
     @JsonProperty("content")
     private String content;
+    // left out when not set, older workers do not know these
+    @JsonProperty("encoding")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Encoding encoding;
+    @JsonProperty("sha256")
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String sha256;
+
+    @JsonIgnore
+    public boolean isDiff() {
+        return encoding == Encoding.DIFF;
+    }
 }
@@ -0,0 +1,39 @@
+package nl.moj.common.messages;
+
+import java.util.List;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * Published to all workers when an assignment is about to be played, so they can get the assignment ready before the
+ * first request of a team arrives. Every worker answers with a {@link JMSPrepareResponse} carrying the id of the
+ * request.
+ */
+@Getter
+@Builder
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+@ToString
+public class JMSPrepareRequest {
+
+    public static final String DESTINATION = "assignment_prepare";
+
+    @JsonProperty("id")
+    private UUID id;
+
+    @JsonProperty("assignment")
+    private UUID assignment;
+
+    /**
+     * The tests to run against the original sources to check the worker is able to run the assignment.
+     */
+    @JsonProperty("tests")
+    private List<JMSTestCase> tests;
+}
@@ -0,0 +1,38 @@
+package nl.moj.common.messages;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Getter;
+import lombok.ToString;
+import lombok.experimental.SuperBuilder;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * The answer of a worker to a {@link JMSPrepareRequest}, the attempt is the id of the request.
+ */
+@Getter
+@SuperBuilder
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+@ToString(of = { "assignment", "ready", "reason" })
+public class JMSPrepareResponse extends JMSResponse {
+
+    @JsonProperty("assignment")
+    private UUID assignment;
+
+    @JsonProperty("ready")
+    private boolean ready;
+
+    @JsonProperty("reason")
+    private String reason;
+
+    @JsonProperty("started")
+    private Instant started;
+
+    @JsonProperty("ended")
+    private Instant ended;
+}
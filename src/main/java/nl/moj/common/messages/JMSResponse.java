@@ -15,7 +15,9 @@ import lombok.experimental.SuperBuilder;
 @JsonSubTypes({
         @JsonSubTypes.Type(value = JMSCompileResponse.class, name = "compile"),
         @JsonSubTypes.Type(value = JMSTestResponse.class, name = "test"),
-        @JsonSubTypes.Type(value = JMSSubmitResponse.class, name = "submit")
+        @JsonSubTypes.Type(value = JMSTestProgressResponse.class, name = "test_progress"),
+        @JsonSubTypes.Type(value = JMSSubmitResponse.class, name = "submit"),
+        @JsonSubTypes.Type(value = JMSPrepareResponse.class, name = "prepare")
 })
 @Getter
 @SuperBuilder
@@ -24,4 +24,8 @@ public class JMSSubmitRequest extends JMSRequest {
 
     @JsonProperty("sources")
     private List<JMSFile> sources;
+
+    // run the tests one by one in the given order, skip the rest after the first that does not succeed
+    @JsonProperty("fail_fast")
+    private boolean failFast;
 }
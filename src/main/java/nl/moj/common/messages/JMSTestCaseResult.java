@@ -1,6 +1,7 @@
 package nl.moj.common.messages;
 
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
@@ -47,4 +48,7 @@ public class JMSTestCaseResult {
 
     @JsonProperty("reason")
     private String reason;
+
+    @JsonProperty("methods")
+    private List<JMSTestMethodResult> methodResults;
 }
@@ -0,0 +1,40 @@
+package nl.moj.common.messages;
+
+import java.time.Duration;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+import lombok.extern.jackson.Jacksonized;
+
+@Getter
+@Builder
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+@ToString(of = { "name", "status", "duration" })
+public class JMSTestMethodResult {
+
+    @JsonProperty("name")
+    private String name;
+
+    @JsonProperty("status")
+    private Status status;
+
+    @JsonProperty("duration")
+    private Duration duration;
+
+    @JsonProperty("message")
+    private String message;
+
+    @JsonProperty("trace")
+    private String trace;
+
+    public enum Status {
+        SUCCESS,
+        FAILURE,
+        SKIPPED
+    }
+}
@@ -0,0 +1,28 @@
+package nl.moj.common.messages;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import lombok.Getter;
+import lombok.ToString;
+import lombok.experimental.SuperBuilder;
+import lombok.extern.jackson.Jacksonized;
+
+/**
+ * Partial result of a test attempt, sent as soon as the compile or a single test case is done. Carries either the
+ * compile response or one test case result. The {@link JMSTestResponse} with all results still follows and ends the
+ * attempt.
+ */
+@Getter
+@SuperBuilder
+@Jacksonized
+@JsonIgnoreProperties(ignoreUnknown = true)
+@ToString(of = { "compileResponse", "testCaseResult" })
+public class JMSTestProgressResponse extends JMSResponse {
+
+    @JsonProperty("compileResponse")
+    private JMSCompileResponse compileResponse;
+
+    @JsonProperty("testCase")
+    private JMSTestCaseResult testCaseResult;
+}
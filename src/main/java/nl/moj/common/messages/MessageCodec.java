@@ -0,0 +1,32 @@
+package nl.moj.common.messages;
+
+import java.util.Arrays;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The encodings operation requests and responses can be sent in, see {@link OperationMessageConverter}.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum MessageCodec {
+
+    /**
+     * Text messages with a JSON body, understood by every worker and controller.
+     */
+    JSON("json"),
+    /**
+     * Bytes messages with a CBOR body, deflated when large.
+     */
+    CBOR("cbor");
+
+    private final String id;
+
+    public static MessageCodec of(String id) {
+        return Arrays.stream(values())
+                .filter(c -> c.id.equals(id))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown message codec " + id));
+    }
+}
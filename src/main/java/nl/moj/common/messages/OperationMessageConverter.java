@@ -0,0 +1,165 @@
+package nl.moj.common.messages;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.jms.BytesMessage;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+
+import org.springframework.jms.core.MessageCreator;
+import org.springframework.jms.support.converter.MappingJackson2MessageConverter;
+import org.springframework.jms.support.converter.MessageConversionException;
+import org.springframework.jms.support.converter.MessageConverter;
+import org.springframework.jms.support.converter.MessageType;
+import org.springframework.util.ClassUtils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Converts JMS messages with Jackson. By default objects are sent as JSON text messages, operation requests and
+ * responses can be sent in a binary {@link MessageCodec} instead. The codec is set in the {@value #CODEC_PROPERTY}
+ * message property, messages without it are JSON, so messages of workers and controllers that do not know about
+ * codecs are still understood.
+ */
+public class OperationMessageConverter implements MessageConverter {
+
+    public static final String TYPE_ID_PROPERTY = "_type";
+    public static final String CODEC_PROPERTY = "_codec";
+    public static final String ENCODING_PROPERTY = "_encoding";
+
+    private static final String DEFLATE = "deflate";
+
+    private final MappingJackson2MessageConverter json;
+    private final ObjectMapper cbor;
+    private final long compressThreshold;
+
+    public OperationMessageConverter(ObjectMapper jsonMapper, ObjectMapper cborMapper, long compressThreshold) {
+        this.json = new MappingJackson2MessageConverter();
+        this.json.setTargetType(MessageType.TEXT);
+        this.json.setTypeIdPropertyName(TYPE_ID_PROPERTY);
+        this.json.setObjectMapper(jsonMapper);
+        this.cbor = cborMapper;
+        this.compressThreshold = compressThreshold;
+    }
+
+    /**
+     * @return the codec the message was sent in.
+     */
+    public static MessageCodec codecOf(Message message) throws JMSException {
+        String codec = message.getStringProperty(CODEC_PROPERTY);
+        if (codec == null) {
+            return MessageCodec.JSON;
+        }
+        try {
+            return MessageCodec.of(codec);
+        } catch (IllegalArgumentException e) {
+            throw new MessageConversionException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return a creator for a message with the given object in the given codec.
+     */
+    public MessageCreator creator(Object object, MessageCodec codec) {
+        return session -> toMessage(object, session, codec);
+    }
+
+    @Override
+    public Message toMessage(Object object, Session session) throws JMSException {
+        return json.toMessage(object, session);
+    }
+
+    public Message toMessage(Object object, Session session, MessageCodec codec) throws JMSException {
+        if (codec == MessageCodec.JSON) {
+            return json.toMessage(object, session);
+        }
+        BytesMessage message = session.createBytesMessage();
+        byte[] body = write(object, codec);
+        if (body.length > compressThreshold) {
+            body = deflate(body);
+            message.setStringProperty(ENCODING_PROPERTY, DEFLATE);
+        }
+        message.writeBytes(body);
+        message.setStringProperty(CODEC_PROPERTY, codec.getId());
+        message.setStringProperty(TYPE_ID_PROPERTY, object.getClass().getName());
+        return message;
+    }
+
+    @Override
+    public Object fromMessage(Message message) throws JMSException {
+        MessageCodec codec = codecOf(message);
+        if (codec == MessageCodec.JSON) {
+            return json.fromMessage(message);
+        }
+        if (!(message instanceof BytesMessage bytesMessage)) {
+            throw new MessageConversionException(
+                    "Expected a bytes message for codec " + codec.getId() + ", got " + message.getClass().getName());
+        }
+        byte[] body = new byte[(int) bytesMessage.getBodyLength()];
+        bytesMessage.readBytes(body);
+        if (DEFLATE.equals(message.getStringProperty(ENCODING_PROPERTY))) {
+            body = inflate(body);
+        }
+        return read(body, type(message.getStringProperty(TYPE_ID_PROPERTY)));
+    }
+
+    private byte[] write(Object object, MessageCodec codec) {
+        try {
+            return cbor.writeValueAsBytes(object);
+        } catch (IOException e) {
+            throw new MessageConversionException(
+                    "Unable to write " + object.getClass().getName() + " as " + codec.getId(), e);
+        }
+    }
+
+    private Object read(byte[] body, Class<?> type) {
+        try {
+            return cbor.readValue(body, type);
+        } catch (IOException e) {
+            throw new MessageConversionException("Unable to read " + type.getName(), e);
+        }
+    }
+
+    // only operation messages are sent in a binary codec, do not instantiate anything else
+    private Class<?> type(String typeId) {
+        if (typeId == null) {
+            throw new MessageConversionException("Missing type id property " + TYPE_ID_PROPERTY);
+        }
+        try {
+            Class<?> type = ClassUtils.forName(typeId, getClass().getClassLoader());
+            if (!JMSRequest.class.isAssignableFrom(type) && !JMSResponse.class.isAssignableFrom(type)) {
+                throw new MessageConversionException("Type " + typeId + " is not an operation message");
+            }
+            return type;
+        } catch (ClassNotFoundException e) {
+            throw new MessageConversionException("Unknown type " + typeId, e);
+        }
+    }
+
+    private static byte[] deflate(byte[] body) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4);
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(out, deflater)) {
+            dos.write(body);
+        } catch (IOException e) {
+            throw new MessageConversionException("Unable to deflate message body", e);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] inflate(byte[] body) {
+        try (InflaterInputStream in = new InflaterInputStream(new ByteArrayInputStream(body))) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new MessageConversionException("Unable to inflate message body", e);
+        }
+    }
+}
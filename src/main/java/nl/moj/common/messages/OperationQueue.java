@@ -0,0 +1,19 @@
+package nl.moj.common.messages;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * The queues operation requests are sent to, in the order workers take requests from them. A worker only takes a
+ * request from a queue if all queues before it are empty, so submits overtake queued tests and compiles.
+ */
+@Getter
+@RequiredArgsConstructor
+public enum OperationQueue {
+
+    SUBMIT("operation_request.submit"),
+    TEST("operation_request.test"),
+    COMPILE("operation_request.compile");
+
+    private final String destination;
+}
@@ -24,6 +24,7 @@ public class StorageService {
     private static final String SOUNDS = "sounds";
     private static final String JAVADOC = "javadoc";
     private static final String ASSIGNMENTS = "assignments";
+    private static final String CACHE = "cache";
 
     private final MojServerProperties mojServerProperties;
 
@@ -51,6 +52,10 @@ public class StorageService {
         return mojServerProperties.getDataDirectory().resolve(JAVADOC);
     }
 
+    public Path getCacheFolder() {
+        return mojServerProperties.getDataDirectory().resolve(CACHE);
+    }
+
     public Path getSessionTeamFolder(UUID sessionId, UUID teamId) {
         return getSessionsFolder()
                 .resolve(sessionId.toString())
@@ -0,0 +1,32 @@
+package nl.moj.common.toolchain;
+
+import java.nio.file.Path;
+
+import lombok.Builder;
+import lombok.Value;
+import nl.moj.common.config.properties.Languages;
+
+/**
+ * A JDK as found when probing the configured Java versions.
+ */
+@Value
+@Builder
+public class Toolchain {
+
+    String name;
+    Integer version;
+    Path compiler;
+    Path runtime;
+    Integer detectedVersion;
+    boolean available;
+    boolean fallback;
+
+    public Languages.JavaVersion toJavaVersion() {
+        Languages.JavaVersion javaVersion = new Languages.JavaVersion();
+        javaVersion.setName(name);
+        javaVersion.setVersion(version);
+        javaVersion.setCompiler(compiler);
+        javaVersion.setRuntime(runtime);
+        return javaVersion;
+    }
+}
@@ -0,0 +1,32 @@
+package nl.moj.common.toolchain;
+
+import java.util.List;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Shows the probed toolchains on {@code /actuator/toolchains}, a POST to it rescans them. Only facilitators can
+ * reach it on the controller, workers do not expose it.
+ */
+@Component
+@Endpoint(id = "toolchains")
+@RequiredArgsConstructor
+public class ToolchainEndpoint {
+
+    private final ToolchainService toolchainService;
+
+    @ReadOperation
+    public List<Toolchain> toolchains() {
+        return toolchainService.getToolchains();
+    }
+
+    @WriteOperation
+    public List<Toolchain> rescan() {
+        return toolchainService.rescan();
+    }
+}
@@ -0,0 +1,23 @@
+package nl.moj.common.toolchain;
+
+import org.springframework.boot.actuate.health.AbstractHealthIndicator;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Down when none of the probed toolchains is usable.
+ */
+@Component("toolchains")
+@RequiredArgsConstructor
+public class ToolchainHealthIndicator extends AbstractHealthIndicator {
+
+    private final ToolchainService toolchainService;
+
+    @Override
+    protected void doHealthCheck(Health.Builder builder) {
+        builder.status(toolchainService.getToolchains().stream().anyMatch(Toolchain::isAvailable) ? "UP" : "DOWN");
+        builder.withDetail("toolchains", toolchainService.getToolchains());
+    }
+}
@@ -0,0 +1,120 @@
+package nl.moj.common.toolchain;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.config.properties.Languages;
+import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.util.JavaVersionUtil;
+
+/**
+ * Probes the configured Java versions once, at startup or when a rescan is requested, so resolving the JDK for a
+ * compile or test does not have to start any processes.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ToolchainService {
+
+    private final MojServerProperties mojServerProperties;
+
+    private volatile List<Toolchain> toolchains = List.of();
+    private final Map<Integer, Languages.JavaVersion> resolved = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        rescan();
+    }
+
+    /**
+     * Probes all configured Java versions and the JAVA_HOME fallback again.
+     *
+     * @return the toolchains found.
+     */
+    public synchronized List<Toolchain> rescan() {
+        List<Toolchain> found = new ArrayList<>();
+        mojServerProperties.getLanguages().getJavaVersions().forEach(jv -> found.add(probe(jv, false)));
+        fallback().ifPresent(jv -> found.add(probe(jv, true)));
+
+        found.forEach(t -> log.info("Toolchain {} version {} (detected {}), compiler {}, runtime {}, available: {}",
+                t.getName(), t.getVersion(), t.getDetectedVersion(), t.getCompiler(), t.getRuntime(),
+                t.isAvailable()));
+
+        toolchains = List.copyOf(found);
+        resolved.clear();
+        return toolchains;
+    }
+
+    public List<Toolchain> getToolchains() {
+        return toolchains;
+    }
+
+    /**
+     * Finds the first available configured JDK with at least the requested version, falling back to JAVA_HOME.
+     *
+     * @throws IllegalArgumentException if no suitable JDK is available.
+     */
+    public Languages.JavaVersion getJavaVersion(Integer version) {
+        return resolved.computeIfAbsent(version, this::resolve);
+    }
+
+    private Languages.JavaVersion resolve(Integer version) {
+        List<Toolchain> current = toolchains;
+        Optional<Toolchain> configured = current.stream()
+                .filter(t -> !t.isFallback())
+                .filter(Toolchain::isAvailable)
+                .filter(t -> t.getVersion() >= version)
+                .findFirst();
+        if (configured.isPresent()) {
+            return configured.get().toJavaVersion();
+        }
+
+        // we should still check if the specified version is available
+        // on the fallback as source and target version
+        Toolchain fallback = current.stream().filter(Toolchain::isFallback).findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(
+                        "No java version defined and no JAVA_HOME specified, cannot run without a javac/java..."));
+        if (fallback.getVersion() != null && version != null && version >= 1 && version <= fallback.getVersion()) {
+            log.debug("Using JAVA_HOME since it is an appropriate version");
+            return fallback.toJavaVersion();
+        }
+        throw new IllegalArgumentException("No java runtime available for version " + version);
+    }
+
+    private Toolchain probe(Languages.JavaVersion javaVersion, boolean fallback) {
+        boolean exists = javaVersion.getCompiler().toFile().exists() && javaVersion.getRuntime().toFile().exists();
+        Integer detected = exists ? JavaVersionUtil.getRuntimeMajorVersion(javaVersion) : null;
+        return Toolchain.builder()
+                .name(javaVersion.getName())
+                .version(fallback ? detected : javaVersion.getVersion())
+                .compiler(javaVersion.getCompiler())
+                .runtime(javaVersion.getRuntime())
+                .detectedVersion(detected)
+                .available(exists && detected != null && (fallback || detected.equals(javaVersion.getVersion())))
+                .fallback(fallback)
+                .build();
+    }
+
+    private Optional<Languages.JavaVersion> fallback() {
+        String javaHome = System.getenv("JAVA_HOME");
+        if (StringUtils.isBlank(javaHome)) {
+            return Optional.empty();
+        }
+        Languages.JavaVersion v = new Languages.JavaVersion();
+        v.setCompiler(Paths.get(javaHome, "bin", "javac"));
+        v.setRuntime(Paths.get(javaHome, "bin", "java"));
+        v.setName("fallback");
+        return Optional.of(v);
+    }
+}
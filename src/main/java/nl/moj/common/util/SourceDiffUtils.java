@@ -0,0 +1,92 @@
+package nl.moj.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+
+import com.github.difflib.DiffUtils;
+import com.github.difflib.UnifiedDiffUtils;
+import com.github.difflib.patch.Patch;
+import com.github.difflib.patch.PatchFailedException;
+
+import nl.moj.common.messages.JMSFile;
+
+/**
+ * Ships team sources as unified diffs against the original assignment sources, which workers already have.
+ */
+public class SourceDiffUtils {
+
+    private static final String NEWLINE = "\n";
+
+    /**
+     * @return the source as a diff against the original if that is smaller, otherwise the full source.
+     */
+    public static JMSFile source(String path, String content, String original) {
+        if (original != null) {
+            String diff = diff(path, original, content);
+            if (diff != null && diff.length() < content.length()) {
+                return JMSFile.builder()
+                        .type(JMSFile.Type.SOURCE)
+                        .path(path)
+                        .content(diff)
+                        .encoding(JMSFile.Encoding.DIFF)
+                        .sha256(sha256(content))
+                        .build();
+            }
+        }
+        return JMSFile.builder()
+                .type(JMSFile.Type.SOURCE)
+                .path(path)
+                .content(content)
+                .build();
+    }
+
+    /**
+     * @return the content of the file, a diff is applied to the given original and checked against its hash.
+     */
+    public static String content(JMSFile file, String original) throws PatchFailedException {
+        if (!file.isDiff()) {
+            return file.getContent();
+        }
+        String content = patch(original, file.getContent());
+        if (!sha256(content).equals(file.getSha256())) {
+            throw new PatchFailedException("Patched source " + file.getPath() + " does not match its hash.");
+        }
+        return content;
+    }
+
+    public static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // the diff is only used when it reproduces the content, unified diffs do not survive every input
+    private static String diff(String path, String original, String content) {
+        List<String> originalLines = lines(original);
+        Patch<String> patch = DiffUtils.diff(originalLines, lines(content));
+        String diff = String.join(NEWLINE,
+                UnifiedDiffUtils.generateUnifiedDiff(path, path, originalLines, patch, 0));
+        try {
+            return content.equals(patch(original, diff)) ? diff : null;
+        } catch (PatchFailedException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String patch(String original, String diff) throws PatchFailedException {
+        Patch<String> patch = UnifiedDiffUtils.parseUnifiedDiff(lines(diff));
+        return String.join(NEWLINE, DiffUtils.patch(lines(original), patch));
+    }
+
+    // keeps a trailing empty line and carriage returns, joining the lines gives back the exact text
+    private static List<String> lines(String text) {
+        return Arrays.asList(text.split(NEWLINE, -1));
+    }
+}
@@ -4,8 +4,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -50,16 +51,21 @@ public class ZipUtils {
         return null;
     }
 
+    /**
+     * Zips the files in the source folder that are accepted by the filter. Entries are written in path order, so
+     * the same files always give the same entries.
+     */
     public static void zip(Path source, OutputStream out, Predicate<Path> filter) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(source)) {
+            files = walk.filter(Files::isRegularFile).filter(filter).sorted().toList();
+        }
         try (ZipOutputStream zos = new ZipOutputStream(out)) {
-            Files.walkFileTree(source, new SimpleFileVisitor<>() {
-                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-                    zos.putNextEntry(new ZipEntry(source.relativize(file).toString()));
-                    Files.copy(file, zos);
-                    zos.closeEntry();
-                    return FileVisitResult.CONTINUE;
-                }
-            });
+            for (Path file : files) {
+                zos.putNextEntry(new ZipEntry(source.relativize(file).toString().replace('\\', '/')));
+                Files.copy(file, zos);
+                zos.closeEntry();
+            }
         }
     }
 
@@ -8,6 +8,7 @@ import org.springframework.web.client.RestTemplate;
 
 import nl.moj.common.assignment.service.AssignmentDescriptorService;
 import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.storage.StorageService;
 import nl.moj.modes.condition.ConditionalOnMode;
 import nl.moj.worker.controller.ControllerClient;
 import nl.moj.worker.controller.RemoteControllerClient;
@@ -24,7 +25,7 @@ public class WorkerConfig {
 
     @Bean
     public ControllerClient controllerClient(MojServerProperties mojServerProperties, RestTemplate restTemplate,
-            AssignmentDescriptorService ads) {
-        return new RemoteControllerClient(mojServerProperties, ads, restTemplate);
+            AssignmentDescriptorService ads, StorageService storageService) {
+        return new RemoteControllerClient(mojServerProperties, ads, restTemplate, storageService);
     }
 }
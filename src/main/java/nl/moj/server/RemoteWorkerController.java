@@ -1,45 +1,43 @@
 package nl.moj.server;
 
 import java.io.IOException;
-import java.io.OutputStream;
-import java.nio.file.Path;
 import java.util.UUID;
 
-import javax.servlet.http.HttpServletResponse;
-
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 
 import lombok.RequiredArgsConstructor;
-import lombok.extern.slf4j.Slf4j;
-import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
-import nl.moj.common.util.ZipUtils;
+import nl.moj.server.assignment.service.AssignmentArchiveService;
+import nl.moj.server.assignment.service.AssignmentArchiveService.Archive;
 import nl.moj.server.assignment.service.AssignmentService;
 
 @Controller
 @RequiredArgsConstructor
-@Slf4j
 public class RemoteWorkerController {
 
     private final AssignmentService assignmentService;
+    private final AssignmentArchiveService assignmentArchiveService;
 
+    /**
+     * Serves the prebuilt archive of the assignment content without the solution files. The ETag is the version of
+     * the archive, workers use it to only download the content again when it changed. Range requests are supported
+     * to resume an interrupted download.
+     */
     @GetMapping(value = "/api/assignment/{id}/content", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
-    public void getAssignmentContent(@PathVariable("id") UUID uuid, HttpServletResponse response) throws IOException {
-        AssignmentDescriptor ad = assignmentService.resolveAssignmentDescriptor(uuid);
-        Path src = assignmentService.getAssignmentContentFolder(uuid);
-
-        response.setStatus(HttpServletResponse.SC_OK);
-        response.addHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"assignment-" + uuid + ".zip\"");
-
-        try (OutputStream out = response.getOutputStream()) {
-            ZipUtils.zip(src, out, path -> {
-                boolean accept = ad.getAssignmentFiles().getSolution().stream().noneMatch(path::endsWith);
-                log.info("Path {} accepted -> {}", path, accept);
-                return accept;
-            });
-        }
+    public ResponseEntity<Resource> getAssignmentContent(@PathVariable("id") UUID uuid) throws IOException {
+        Archive archive = assignmentArchiveService.getArchive(uuid, assignmentService.getAssignmentContentFolder(uuid),
+                assignmentService.resolveAssignmentDescriptor(uuid));
+        return ResponseEntity.ok()
+                .eTag(archive.getVersion())
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        ContentDisposition.attachment().filename("assignment-" + uuid + ".zip").build().toString())
+                .body(new FileSystemResource(archive.getFile()));
     }
 }
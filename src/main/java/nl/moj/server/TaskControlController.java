@@ -60,6 +60,8 @@ import nl.moj.server.competition.repository.CompetitionRepository;
 import nl.moj.server.competition.repository.CompetitionSessionRepository;
 import nl.moj.server.competition.service.CompetitionService;
 import nl.moj.server.competition.service.CompetitionServiceException;
+import nl.moj.server.message.service.AssignmentPrepareService;
+import nl.moj.server.message.service.AssignmentPrepareService.WorkerReadiness;
 import nl.moj.server.metrics.MetricsService;
 import nl.moj.server.metrics.MetricsVO;
 import nl.moj.server.runtime.CompetitionRuntime;
@@ -95,6 +97,8 @@ public class TaskControlController {
 
     private final MetricsService metricsService;
 
+    private final AssignmentPrepareService assignmentPrepareService;
+
     @RolesAllowed({ Role.GAME_MASTER, Role.ADMIN })
     @PostMapping(value = "/api/assignment/discover", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<Map<String, String>> discoverAssignments() {
@@ -164,6 +168,17 @@ public class TaskControlController {
         }
     }
 
+    @RolesAllowed({ Role.GAME_MASTER, Role.ADMIN })
+    @PostMapping(value = "/api/session/{sid}/assignment/{aid}/prepare", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Void> prepareAssignment(@PathVariable("sid") UUID sid, @PathVariable("aid") UUID aid) {
+        Assignment assignment = assignmentRepository.findByUuid(aid);
+        if (assignment == null) {
+            return ResponseEntity.notFound().build();
+        }
+        assignmentPrepareService.prepare(assignment);
+        return ResponseEntity.noContent().build();
+    }
+
     @RolesAllowed({ Role.GAME_MASTER, Role.ADMIN })
     @PostMapping(value = "/api/session/{sid}/assignment/{aid}/stop", consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
     public ResponseEntity<AssignmentVO> stopAssignment(@PathVariable("sid") UUID sid, @PathVariable("aid") UUID aid) {
@@ -229,6 +244,12 @@ public class TaskControlController {
         }
     }
 
+    @RolesAllowed({ Role.GAME_MASTER, Role.ADMIN })
+    @GetMapping(value = "/workers", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<List<WorkerReadiness>> getWorkerReadiness() {
+        return ResponseEntity.ok(assignmentPrepareService.getReadiness());
+    }
+
     @Value
     @Builder
     @Jacksonized
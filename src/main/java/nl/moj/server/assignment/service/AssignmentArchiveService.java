@@ -0,0 +1,131 @@
+package nl.moj.server.assignment.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
+import nl.moj.common.storage.StorageService;
+import nl.moj.common.util.ZipUtils;
+
+/**
+ * Builds the archives workers download the content of an assignment in. An archive holds all files except the
+ * solution, it is built once per version of the content and kept in the cache folder. The version is a hash of the
+ * files in the archive, so it can be used as a strong ETag.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AssignmentArchiveService {
+
+    private static final String ZIP = ".zip";
+
+    private final StorageService storageService;
+
+    private final Map<UUID, Archive> archives = new ConcurrentHashMap<>();
+
+    /**
+     * @return the archive of the assignment, built on the first request after the assignments were updated.
+     */
+    public Archive getArchive(UUID assignment, Path folder, AssignmentDescriptor ad) throws IOException {
+        try {
+            Archive archive = archives.get(assignment);
+            if (archive != null && Files.exists(archive.getFile())) {
+                return archive;
+            }
+            return archives.compute(assignment, (uuid, current) -> current != null && Files.exists(current.getFile())
+                    ? current
+                    : build(uuid, folder, ad));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Forgets the archives, the next request checks the content again and only builds a new archive if it changed.
+     */
+    public void clear() {
+        archives.clear();
+    }
+
+    private Archive build(UUID assignment, Path folder, AssignmentDescriptor ad) {
+        Predicate<Path> accept = path -> ad.getAssignmentFiles().getSolution().stream().noneMatch(path::endsWith);
+        try {
+            String version = version(folder, accept);
+            Path directory = storageService.getCacheFolder().resolve("archives").resolve(assignment.toString());
+            Path file = directory.resolve(version + ZIP);
+            if (!Files.exists(file)) {
+                Files.createDirectories(directory);
+                Path zip = Files.createTempFile(directory, "archive", ".tmp");
+                try {
+                    try (OutputStream out = Files.newOutputStream(zip)) {
+                        ZipUtils.zip(folder, out, accept);
+                    }
+                    Files.move(zip, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } finally {
+                    Files.deleteIfExists(zip);
+                }
+                log.info("Built archive version {} of assignment {}.", version, assignment);
+                removeOtherVersions(directory, file);
+            }
+            return new Archive(version, file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // downloads still reading a removed archive keep their open file
+    private void removeOtherVersions(Path directory, Path file) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path other : files.filter(f -> f.toString().endsWith(ZIP) && !f.equals(file)).toList()) {
+                Files.deleteIfExists(other);
+            }
+        }
+    }
+
+    private static String version(Path folder, Predicate<Path> accept) throws IOException {
+        MessageDigest digest = sha256();
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(folder)) {
+            files = walk.filter(Files::isRegularFile).filter(accept).sorted().toList();
+        }
+        for (Path file : files) {
+            byte[] content = Files.readAllBytes(file);
+            digest.update((folder.relativize(file) + "\0" + content.length + "\0").getBytes(StandardCharsets.UTF_8));
+            digest.update(content);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Value
+    public static class Archive {
+        String version;
+        Path file;
+    }
+}
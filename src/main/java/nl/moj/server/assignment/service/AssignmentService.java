@@ -17,22 +17,28 @@
 package nl.moj.server.assignment.service;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.annotation.PostConstruct;
 import javax.transaction.Transactional;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.util.Strings;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
@@ -65,6 +71,25 @@ public class AssignmentService {
 
     private final StorageService storageService;
 
+    private final MeterRegistry meterRegistry;
+
+    private final AssignmentArchiveService assignmentArchiveService;
+
+    // parsed descriptors are shared by all callers, they must not be modified
+    private final Map<Path, CachedDescriptor> descriptors = new ConcurrentHashMap<>();
+
+    private Counter descriptorHits;
+
+    private Counter descriptorMisses;
+
+    @PostConstruct
+    public void init() {
+        descriptorHits = Counter.builder("moj.assignment.descriptor.cache").tag("result", "hit")
+                .register(meterRegistry);
+        descriptorMisses = Counter.builder("moj.assignment.descriptor.cache").tag("result", "miss")
+                .register(meterRegistry);
+    }
+
     @Transactional(Transactional.TxType.REQUIRED)
     public Assignment findAssignmentByName(String name) {
         return assignmentRepository.findByName(name);
@@ -88,8 +113,27 @@ public class AssignmentService {
         return resolveAssignmentDescriptor(assignment.getAssignmentDescriptor());
     }
 
+    /**
+     * Parses the descriptor once and serves it from a cache until the file changes. The returned descriptor is shared
+     * and must not be modified.
+     */
     public AssignmentDescriptor resolveAssignmentDescriptor(String assignmentDescriptor) {
-        return assignmentDescriptorService.parseAssignmentDescriptor(Paths.get(assignmentDescriptor));
+        Path file = Paths.get(assignmentDescriptor);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        CachedDescriptor cached = descriptors.get(file);
+        if (cached != null && cached.isCurrent(attributes)) {
+            descriptorHits.increment();
+            return cached.descriptor();
+        }
+        descriptorMisses.increment();
+        AssignmentDescriptor ad = assignmentDescriptorService.parseAssignmentDescriptor(file);
+        descriptors.put(file, new CachedDescriptor(attributes.lastModifiedTime(), attributes.size(), ad));
+        return ad;
     }
 
     public Duration resolveCompileAbortTimout(Assignment assignment) {
@@ -132,6 +176,8 @@ public class AssignmentService {
                 .map(AssignmentDescriptorValidationResult::getAssignment).toList();
         if (invalid.isEmpty()) {
             ASSIGNMENT_FILES.clear();
+            descriptors.clear();
+            assignmentArchiveService.clear();
             // update or create
             return assignments.stream().map(d -> {
                 Assignment current = assignmentRepository.findByName(d.getName());
@@ -219,4 +265,10 @@ public class AssignmentService {
         return result;
     }
 
+    private record CachedDescriptor(FileTime lastModified, long size, AssignmentDescriptor descriptor) {
+
+        boolean isCurrent(BasicFileAttributes attributes) {
+            return lastModified.equals(attributes.lastModifiedTime()) && size == attributes.size();
+        }
+    }
 }
@@ -37,4 +37,9 @@ public interface CompileAttemptRepository extends JpaRepository<CompileAttempt,
             "where ca.assignmentStatus = ?1 and ca.dateTimeRegister > ?2")
     long countNewerAttempts(TeamAssignmentStatus tas, Instant dateRegistered);
 
+    // compile attempts that are part of a test attempt are superseded together with their test attempt
+    @Query(value = "select ca from CompileAttempt ca " +
+            "where ca.assignmentStatus = ?1 and ca.id < ?2 and ca.dateTimeEnd is null " +
+            "and not exists (select ta from TestAttempt ta where ta.compileAttempt = ca)")
+    List<CompileAttempt> findPendingCompileOnlyAttempts(TeamAssignmentStatus tas, Long before);
 }
@@ -19,13 +19,12 @@ package nl.moj.server.compiler.service;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.List;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import javax.transaction.Transactional;
 
 import org.springframework.cloud.sleuth.annotation.NewSpan;
-import org.springframework.jms.core.JmsTemplate;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
@@ -33,11 +32,13 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.messages.JMSCompileRequest;
 import nl.moj.common.messages.JMSCompileResponse;
-import nl.moj.common.messages.JMSFile;
+import nl.moj.common.messages.OperationQueue;
 import nl.moj.server.assignment.service.AssignmentService;
 import nl.moj.server.compiler.model.CompileAttempt;
 import nl.moj.server.compiler.repository.CompileAttemptRepository;
 import nl.moj.server.message.service.MessageService;
+import nl.moj.server.message.service.OperationCancelService;
+import nl.moj.server.message.service.OperationRequestService;
 import nl.moj.server.metrics.MetricsService;
 import nl.moj.server.runtime.model.TeamAssignmentStatus;
 import nl.moj.server.runtime.repository.TeamAssignmentStatusRepository;
@@ -53,13 +54,14 @@ public class CompileService {
     private final CompileAttemptRepository compileAttemptRepository;
     private final TeamAssignmentStatusRepository teamAssignmentStatusRepository;
     private final TeamService teamService;
-    private final JmsTemplate jmsTemplate;
+    private final OperationRequestService operationRequestService;
     private final MessageService messageService;
     private final JMSResponseHelper responseHelper;
     private final AssignmentService assignmentService;
     private final TaskScheduler taskScheduler;
     private final TransactionHelper trx;
     private final MetricsService metricsService;
+    private final OperationCancelService operationCancelService;
 
     @Transactional
     public void receiveCompileResponse(JMSCompileResponse compileResponse) {
@@ -103,15 +105,16 @@ public class CompileService {
                     compileRequest.getAssignment().getUuid(), compileRequest.getSources());
 
             CompileAttempt compileAttempt = prepareCompileAttempt(compileRequest);
+            // nobody will see the feedback of older pending compiles, do not let a worker waste time on them
+            List<UUID> superseded = supersedePendingAttempts(compileAttempt);
+            operationCancelService.cancel(superseded, JMSResponseHelper.SUPERSEDED);
+
             // send JMS compile request
-            jmsTemplate.convertAndSend("operation_request", JMSCompileRequest.builder()
+            operationRequestService.send(OperationQueue.COMPILE, JMSCompileRequest.builder()
                     .attempt(compileAttempt.getUuid())
                     .assignment(compileRequest.getAssignment().getUuid())
-                    .sources(compileRequest.getSources().entrySet().stream().map(e -> JMSFile.builder()
-                            .type(JMSFile.Type.SOURCE)
-                            .path(e.getKey().toString())
-                            .content(e.getValue())
-                            .build()).collect(Collectors.toList()))
+                    .sources(operationRequestService.sources(compileRequest.getAssignment(),
+                            compileRequest.getSources()))
                     .build());
 
             // schedule controller abort
@@ -148,6 +151,24 @@ public class CompileService {
         return compileAttemptRepository.save(compileAttempt);
     }
 
+    /**
+     * Ends all compile attempts of the same team and assignment registered before the given one that are still
+     * waiting for a response. Compile attempts that are part of a test or submit are left alone.
+     *
+     * @return the superseded compile attempts.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public List<UUID> supersedePendingAttempts(CompileAttempt newer) {
+        // ids follow registration order, timestamps may lose precision in the database
+        List<UUID> superseded = compileAttemptRepository.findPendingCompileOnlyAttempts(newer.getAssignmentStatus(),
+                newer.getId())
+                .stream()
+                .map(ca -> update(ca, responseHelper.supersededResponse(ca)).getUuid())
+                .toList();
+        metricsService.registerSupersededAttempts(OperationQueue.COMPILE, superseded.size());
+        return superseded;
+    }
+
     @Transactional(Transactional.TxType.MANDATORY)
     public CompileAttempt update(CompileAttempt compileAttempt, JMSCompileResponse compileResponse) {
 
@@ -179,6 +200,8 @@ public class CompileService {
                 if (ca != null && ca.getDateTimeEnd() == null && ca.getAssignmentStatus().getDateTimeEnd() == null) {
                     log.info("Aborting compile attempt {}, response took too long.", ca.getUuid());
                     receiveCompileResponse(responseHelper.abortResponse(ca));
+                    // stop the worker from spending more time on it
+                    operationCancelService.cancel(List.of(ca.getUuid()), JMSResponseHelper.NO_RESPONSE);
                 }
             });
         }, Instant.now().plus(timeout));
@@ -66,7 +66,7 @@ public class WebSecurityConfiguration {
                 .permitAll()
                 .antMatchers("/play", "/feedback", "/rankings")
                 .hasAnyAuthority(Role.USER, Role.GAME_MASTER, Role.ADMIN) // always access
-                .antMatchers("/control", "/bootstrap", "/assignmentAdmin")
+                .antMatchers("/control", "/bootstrap", "/assignmentAdmin", "/actuator/toolchains")
                 .hasAnyAuthority(Role.GAME_MASTER, Role.ADMIN) // only facilitators
                 .anyRequest()
                 .authenticated())
@@ -0,0 +1,126 @@
+package nl.moj.server.message.service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.activemq.artemis.jms.client.ActiveMQTopic;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Service;
+
+import lombok.Builder;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.config.properties.Competition;
+import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.messages.JMSPrepareRequest;
+import nl.moj.common.messages.JMSPrepareResponse;
+import nl.moj.common.messages.JMSTestCase;
+import nl.moj.server.assignment.model.Assignment;
+import nl.moj.server.assignment.service.AssignmentService;
+import nl.moj.server.runtime.model.AssignmentFileType;
+
+/**
+ * Asks all workers to get ready for an assignment and keeps track of their answers, so the game master can see every
+ * worker is ready before the clock starts. Only the answers for the most recent preparation are kept.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AssignmentPrepareService {
+
+    private final JmsTemplate jmsTemplate;
+    private final AssignmentService assignmentService;
+    private final MojServerProperties mojServerProperties;
+
+    private volatile Preparation current;
+
+    /**
+     * Publishes a prepare request for a starting assignment, unless the workers were already asked to prepare it.
+     */
+    public void prepareOnStart(Assignment assignment) {
+        Competition competition = mojServerProperties.getCompetition();
+        Preparation preparation = current;
+        if ((competition == null || competition.isPrepareOnStart())
+                && (preparation == null || !preparation.assignment().equals(assignment.getUuid()))) {
+            prepare(assignment);
+        }
+    }
+
+    /**
+     * Publishes a prepare request for the assignment.
+     *
+     * @return the id of the request, workers answer with it as attempt.
+     */
+    public UUID prepare(Assignment assignment) {
+        // one visible test is enough to start the test runners
+        List<JMSTestCase> tests = assignmentService.getAssignmentFiles(assignment)
+                .stream()
+                .filter(f -> f.getFileType() == AssignmentFileType.TEST)
+                .limit(1)
+                .map(f -> JMSTestCase.builder().testCase(f.getUuid()).name(f.getName()).build())
+                .toList();
+        Preparation preparation = new Preparation(UUID.randomUUID(), assignment.getUuid(), assignment.getName(),
+                new ConcurrentHashMap<>());
+        current = preparation;
+        log.info("Asking workers to prepare assignment {}.", assignment.getName());
+        jmsTemplate.convertAndSend(new ActiveMQTopic(JMSPrepareRequest.DESTINATION),
+                JMSPrepareRequest.builder()
+                        .id(preparation.id())
+                        .assignment(assignment.getUuid())
+                        .tests(tests)
+                        .build());
+        return preparation.id();
+    }
+
+    public void receivePrepareResponse(JMSPrepareResponse response) {
+        Preparation preparation = current;
+        if (preparation == null || !preparation.id().equals(response.getAttempt())) {
+            log.debug("Ignoring outdated prepare response of worker {}.", response.getWorker());
+            return;
+        }
+        log.info("Worker {} prepared assignment {}: {}", response.getWorker(), preparation.name(), response);
+        preparation.workers().put(response.getWorker(), WorkerReadiness.builder()
+                .worker(response.getWorker())
+                .assignment(preparation.name())
+                .ready(response.isReady())
+                .reason(response.getReason())
+                .seconds(response.getStarted() != null && response.getEnded() != null
+                        ? Duration.between(response.getStarted(), response.getEnded()).toMillis() / 1000.0
+                        : 0)
+                .prepared(response.getEnded())
+                .build());
+    }
+
+    /**
+     * @return the readiness of the workers that answered the most recent prepare request.
+     */
+    public List<WorkerReadiness> getReadiness() {
+        Preparation preparation = current;
+        if (preparation == null) {
+            return List.of();
+        }
+        return preparation.workers().values().stream()
+                .sorted(Comparator.comparing(WorkerReadiness::getWorker))
+                .toList();
+    }
+
+    private record Preparation(UUID id, UUID assignment, String name, Map<String, WorkerReadiness> workers) {
+    }
+
+    @Value
+    @Builder
+    public static class WorkerReadiness {
+        String worker;
+        String assignment;
+        boolean ready;
+        String reason;
+        double seconds;
+        Instant prepared;
+    }
+}
@@ -6,8 +6,10 @@ import org.springframework.stereotype.Component;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.messages.JMSCompileResponse;
+import nl.moj.common.messages.JMSPrepareResponse;
 import nl.moj.common.messages.JMSResponse;
 import nl.moj.common.messages.JMSSubmitResponse;
+import nl.moj.common.messages.JMSTestProgressResponse;
 import nl.moj.common.messages.JMSTestResponse;
 import nl.moj.server.compiler.service.CompileService;
 import nl.moj.server.submit.service.SubmitService;
@@ -26,14 +28,20 @@ public class JmsMessageListener {
 
     private final TestService testService;
 
+    private final AssignmentPrepareService assignmentPrepareService;
+
     @JmsListener(destination = RESPONSE_DESTINATION)
     public void receiveOperationResponse(JMSResponse response) {
         if (response instanceof JMSCompileResponse r) {
             receiveCompileResponse(r);
         } else if (response instanceof JMSTestResponse r) {
             receiveTestResponse(r);
+        } else if (response instanceof JMSTestProgressResponse r) {
+            receiveTestProgressResponse(r);
         } else if (response instanceof JMSSubmitResponse r) {
             receiveSubmitResponse(r);
+        } else if (response instanceof JMSPrepareResponse r) {
+            assignmentPrepareService.receivePrepareResponse(r);
         } else {
             log.warn("Unable to receive operation response for type {}, ignoring.", response.getClass().getName());
         }
@@ -47,6 +55,10 @@ public class JmsMessageListener {
         testService.receiveTestResponse(testResponse);
     }
 
+    private void receiveTestProgressResponse(JMSTestProgressResponse testProgressResponse) {
+        testService.receiveTestProgressResponse(testProgressResponse);
+    }
+
     private void receiveSubmitResponse(JMSSubmitResponse submitResponse) {
         submitService.receiveSubmitResponse(submitResponse);
     }
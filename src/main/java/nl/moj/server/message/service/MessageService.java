@@ -85,20 +85,38 @@ public class MessageService {
 
     @Transactional(Transactional.TxType.MANDATORY)
     public void sendTestFeedback(TestAttempt ta) {
+        sendTestFeedback(ta, Set.of());
+    }
+
+    /**
+     * Sends the feedback of a test attempt, leaving out the compile attempt and test cases whose feedback was already
+     * sent as partial result.
+     *
+     * @param sent the uuids of the compile attempt and test cases already sent.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void sendTestFeedback(TestAttempt ta, Set<UUID> sent) {
         if (ta != null) {
             Team team = ta.getAssignmentStatus().getTeam();
-            sendCompileFeedback(ta.getCompileAttempt());
+            if (ta.getCompileAttempt() != null && !sent.contains(ta.getCompileAttempt().getUuid())) {
+                sendCompileFeedback(ta.getCompileAttempt());
+            }
 
             // Ordering is needed for testing purposes.
             // TODO add proper test order using assignment descriptor.
             List<TestCase> tcs = new ArrayList<>(ta.getTestCases());
             tcs.sort(Comparator.comparing(TestCase::getName));
-            tcs.forEach(tc -> {
+            tcs.stream().filter(tc -> !sent.contains(tc.getUuid())).forEach(tc -> {
                 sendTestFeedback(team, tc);
             });
         }
     }
 
+    @Transactional(Transactional.TxType.MANDATORY)
+    public void sendTestFeedback(TestCase tc) {
+        sendTestFeedback(tc.getTestAttempt().getAssignmentStatus().getTeam(), tc);
+    }
+
     @Transactional(Transactional.TxType.MANDATORY)
     public void sendTestUnprocessable(Team team) {
         sendCompileUnprocessable(team);
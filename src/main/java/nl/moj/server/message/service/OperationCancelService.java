@@ -0,0 +1,36 @@
+package nl.moj.server.message.service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.UUID;
+
+import org.apache.activemq.artemis.jms.client.ActiveMQTopic;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.messages.JMSCancelRequest;
+
+/**
+ * Tells all workers to drop attempts the controller no longer needs a result for.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OperationCancelService {
+
+    private final JmsTemplate jmsTemplate;
+
+    public void cancel(Collection<UUID> attempts, String reason) {
+        if (attempts.isEmpty()) {
+            return;
+        }
+        log.info("Cancelling attempts {}: {}", attempts, reason);
+        jmsTemplate.convertAndSend(new ActiveMQTopic(JMSCancelRequest.DESTINATION),
+                JMSCancelRequest.builder()
+                        .attempts(new ArrayList<>(attempts))
+                        .reason(reason)
+                        .build());
+    }
+}
@@ -0,0 +1,70 @@
+package nl.moj.server.message.service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
+import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.messages.JMSFile;
+import nl.moj.common.messages.JMSRequest;
+import nl.moj.common.messages.OperationMessageConverter;
+import nl.moj.common.messages.OperationQueue;
+import nl.moj.common.util.SourceDiffUtils;
+import nl.moj.server.assignment.model.Assignment;
+import nl.moj.server.assignment.service.AssignmentService;
+
+/**
+ * Sends operation requests to the workers in the configured message codec.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OperationRequestService {
+
+    private final JmsTemplate jmsTemplate;
+    private final OperationMessageConverter messageConverter;
+    private final MojServerProperties mojServerProperties;
+    private final AssignmentService assignmentService;
+
+    public void send(OperationQueue queue, JMSRequest request) {
+        jmsTemplate.send(queue.getDestination(),
+                messageConverter.creator(request, mojServerProperties.getMessaging().getCodec()));
+    }
+
+    /**
+     * @return the team sources to send, as diffs against the original sources of the assignment if enabled.
+     */
+    public List<JMSFile> sources(Assignment assignment, Map<Path, String> sources) {
+        Path originals = mojServerProperties.getMessaging().isSourceDiffs() ? originals(assignment) : null;
+        return sources.entrySet().stream()
+                .map(e -> SourceDiffUtils.source(e.getKey().toString(), e.getValue(),
+                        original(originals, e.getKey())))
+                .toList();
+    }
+
+    private Path originals(Assignment assignment) {
+        AssignmentDescriptor ad = assignmentService.resolveAssignmentDescriptor(assignment);
+        Path base = ad.getAssignmentFiles().getSources().getBase();
+        return base != null ? ad.getDirectory().resolve(base) : null;
+    }
+
+    private String original(Path base, Path file) {
+        if (base == null) {
+            return null;
+        }
+        try {
+            return Files.readString(base.resolve(file));
+        } catch (IOException e) {
+            log.debug("Unable to read original source {}, sending it in full.", file, e);
+            return null;
+        }
+    }
+}
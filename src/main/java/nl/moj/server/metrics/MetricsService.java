@@ -1,7 +1,10 @@
 package nl.moj.server.metrics;
 
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
@@ -20,9 +23,11 @@ import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.Measurement;
 import io.micrometer.core.instrument.Meter;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import io.micrometer.core.instrument.distribution.HistogramSnapshot;
 import lombok.RequiredArgsConstructor;
+import nl.moj.common.messages.OperationQueue;
 import nl.moj.server.compiler.model.CompileAttempt;
 import nl.moj.server.submit.model.SubmitAttempt;
 import nl.moj.server.test.model.TestAttempt;
@@ -39,6 +44,8 @@ public class MetricsService {
     private Timer testRoundTrip;
     private Timer submitDuration;
     private Timer submitRoundTrip;
+    // time between registering an attempt and a worker starting on it, per operation queue
+    private Map<OperationQueue, Timer> queueWait;
 
     @PostConstruct
     public void init() {
@@ -48,6 +55,10 @@ public class MetricsService {
         testRoundTrip = registerTimer("moj.test.round-trip");
         submitDuration = registerTimer("moj.submit.duration");
         submitRoundTrip = registerTimer("moj.submit.round-trip");
+        queueWait = new EnumMap<>(OperationQueue.class);
+        for (OperationQueue queue : OperationQueue.values()) {
+            queueWait.put(queue, registerTimer("moj.queue.wait", Tags.of("queue", queue.getDestination())));
+        }
     }
 
     public void reset() {
@@ -57,10 +68,18 @@ public class MetricsService {
         meterRegistry.remove(testDuration.getId());
         meterRegistry.remove(submitRoundTrip.getId());
         meterRegistry.remove(submitDuration.getId());
+        queueWait.values().forEach(t -> meterRegistry.remove(t.getId()));
         init();
     }
 
     public void registerCompileAttemptMetrics(CompileAttempt ca) {
+        if (ca != null && ca.getDateTimeRegister() != null && ca.getDateTimeStart() != null) {
+            registerQueueWait(OperationQueue.COMPILE, ca.getDateTimeRegister(), ca.getDateTimeStart());
+        }
+        registerCompileDurations(ca);
+    }
+
+    private void registerCompileDurations(CompileAttempt ca) {
         if (ca != null && ca.getDateTimeRegister() != null && ca.getDateTimeStart() != null && ca.getDateTimeEnd() != null) {
             if (compileDuration != null) {
                 compileDuration.record(Duration.between(ca.getDateTimeStart(), ca.getDateTimeEnd()));
@@ -72,8 +91,15 @@ public class MetricsService {
     }
 
     public void registerTestAttemptMetrics(TestAttempt ta) {
+        if (ta != null && ta.getDateTimeRegister() != null && ta.getDateTimeStart() != null) {
+            registerQueueWait(OperationQueue.TEST, ta.getDateTimeRegister(), ta.getDateTimeStart());
+        }
+        registerTestDurations(ta);
+    }
+
+    private void registerTestDurations(TestAttempt ta) {
         if (ta != null && ta.getDateTimeRegister() != null && ta.getDateTimeStart() != null && ta.getDateTimeEnd() != null) {
-            registerCompileAttemptMetrics(ta.getCompileAttempt());
+            registerCompileDurations(ta.getCompileAttempt());
             if (testDuration != null) {
                 testDuration.record(Duration.between(ta.getDateTimeStart(), ta.getDateTimeEnd()));
             }
@@ -84,8 +110,11 @@ public class MetricsService {
     }
 
     public void registerSubmitAttemptMetrics(SubmitAttempt sa) {
+        if (sa != null && sa.getDateTimeRegister() != null && sa.getDateTimeStart() != null) {
+            registerQueueWait(OperationQueue.SUBMIT, sa.getDateTimeRegister(), sa.getDateTimeStart());
+        }
         if (sa != null && sa.getDateTimeRegister() != null && sa.getDateTimeStart() != null && sa.getDateTimeEnd() != null) {
-            registerTestAttemptMetrics(sa.getTestAttempt());
+            registerTestDurations(sa.getTestAttempt());
             if (submitDuration != null) {
                 submitDuration.record(Duration.between(sa.getDateTimeStart(), sa.getDateTimeEnd()));
             }
@@ -95,9 +124,31 @@ public class MetricsService {
         }
     }
 
+    /**
+     * Counts attempts that were dropped before getting a result because a newer attempt replaced them.
+     */
+    public void registerSupersededAttempts(OperationQueue queue, int count) {
+        if (meterRegistry != null && count > 0) {
+            meterRegistry.counter("moj.attempts.superseded", Tags.of("queue", queue.getDestination())).increment(count);
+        }
+    }
+
+    private void registerQueueWait(OperationQueue queue, Instant registered, Instant started) {
+        Timer timer = queueWait.get(queue);
+        // worker and controller clocks may differ slightly
+        if (timer != null && !started.isBefore(registered)) {
+            timer.record(Duration.between(registered, started));
+        }
+    }
+
     private Timer registerTimer(String metricName) {
+        return registerTimer(metricName, Tags.empty());
+    }
+
+    private Timer registerTimer(String metricName, Tags tags) {
         if (meterRegistry != null) {
             return Timer.builder(metricName)
+                    .tags(tags)
                     .distributionStatisticExpiry(Duration.ofHours(24))
                     .publishPercentiles(0.0, 0.3, 0.5, 0.9)
                     .publishPercentileHistogram()
@@ -160,10 +211,20 @@ public class MetricsService {
                         TreeMap::new,
                         Collectors.toMap(m -> m.getId().getName(), m -> getOrZero(m))));
 
+        Map<String, HistogramSnapshot> waits = new HashMap<>();
+        queueWait.forEach((queue, timer) -> {
+            if (timer != null) {
+                waits.put(queue.getDestination(), timer.takeSnapshot());
+            }
+        });
+
         Set<QueueMetrics> metrics = new HashSet<>();
         for (Map.Entry<String, Map<String, Double>> m : values.entrySet()) {
+            HistogramSnapshot wait = waits.get(m.getKey());
             metrics.add(QueueMetrics.builder()
                     .name(m.getKey())
+                    .waitMean(wait != null ? wait.mean(TimeUnit.SECONDS) : null)
+                    .waitMax(wait != null ? wait.max(TimeUnit.SECONDS) : null)
                     .acknowledged(m.getValue().getOrDefault("artemis.messages.acknowledged", 0.0))
                     .added(m.getValue().getOrDefault("artemis.messages.added", 0.0))
                     .count(m.getValue().getOrDefault("artemis.message.count", 0.0))
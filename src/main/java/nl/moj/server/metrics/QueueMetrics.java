@@ -13,5 +13,10 @@ public class QueueMetrics {
     Double added;
     Double expired;
     Double killed;
+    /**
+     * Mean and max seconds between registering an attempt and a worker starting on it, only for operation queues.
+     */
+    Double waitMean;
+    Double waitMax;
 
 }
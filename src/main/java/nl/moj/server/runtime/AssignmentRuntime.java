@@ -32,7 +32,7 @@ import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
-import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.toolchain.ToolchainService;
 import nl.moj.server.assignment.model.Assignment;
 import nl.moj.server.assignment.repository.AssignmentRepository;
 import nl.moj.server.assignment.service.AssignmentService;
@@ -40,6 +40,7 @@ import nl.moj.server.competition.model.CompetitionAssignment;
 import nl.moj.server.competition.model.CompetitionSession;
 import nl.moj.server.competition.model.CompetitionSession.SessionType;
 import nl.moj.server.competition.repository.CompetitionSessionRepository;
+import nl.moj.server.message.service.AssignmentPrepareService;
 import nl.moj.server.message.service.MessageService;
 import nl.moj.server.runtime.model.ActiveAssignment;
 import nl.moj.server.runtime.model.ActiveAssignment.ActiveAssignmentBuilder;
@@ -60,7 +61,7 @@ import nl.moj.server.util.TransactionHelper;
 @Slf4j
 public class AssignmentRuntime {
 
-    private final MojServerProperties mojServerProperties;
+    private final ToolchainService toolchainService;
     private final AssignmentService assignmentService;
     private final MessageService messageService;
     private final TeamService teamService;
@@ -76,6 +77,7 @@ public class AssignmentRuntime {
 
     private final TransactionHelper trx;
     private final TimersRuntime timersRuntime;
+    private final AssignmentPrepareService assignmentPrepareService;
 
     @Getter
     private Assignment assignment;
@@ -128,6 +130,9 @@ public class AssignmentRuntime {
             return assignmentStatus;
         });
 
+        // workers that were not asked to prepare yet get ready while the first teams open the assignment
+        assignmentPrepareService.prepareOnStart(assignment);
+
         // start the timers
 
         // mark assignment as running
@@ -257,7 +262,7 @@ public class AssignmentRuntime {
     private void verifyAssignment(AssignmentDescriptor ad) throws AssignmentStartException {
         // verify we have a correct runtime available.
         try {
-            mojServerProperties.getLanguages().getJavaVersion(ad.getJavaVersion());
+            toolchainService.getJavaVersion(ad.getJavaVersion());
         } catch (IllegalArgumentException iae) {
             throw new AssignmentStartException("Cannot start assignment " + ad.getName()
                     + ", requested Java runtime version " + ad.getJavaVersion() + " not available.", iae);
@@ -20,12 +20,13 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
-import org.apache.commons.io.IOUtils;
 import org.apache.tika.config.TikaConfig;
 import org.apache.tika.detect.Detector;
 import org.apache.tika.io.TikaInputStream;
@@ -37,10 +38,24 @@ import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.assignment.descriptor.*;
 import nl.moj.server.runtime.model.AssignmentFile;
 import nl.moj.server.runtime.model.AssignmentFileType;
+import nl.moj.server.runtime.model.FileContent;
 
 @Slf4j
 public class JavaAssignmentFileResolver {
 
+    private static final int MAX_MEDIA_TYPES = 4096;
+
+    // creating a detector loads the complete Tika configuration, share one
+    private static final Detector DETECTOR = TikaConfig.getDefaultConfig().getDetector();
+
+    // least recently used first
+    private static final Map<MediaTypeKey, MediaType> MEDIA_TYPES = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<MediaTypeKey, MediaType> eldest) {
+            return size() > MAX_MEDIA_TYPES;
+        }
+    };
+
     public List<AssignmentFile> resolve(AssignmentDescriptor ad) {
         List<AssignmentFile> originalAssignmentFiles = new ArrayList<>();
 
@@ -121,9 +136,12 @@ public class JavaAssignmentFileResolver {
             bp = ap.resolve(prefix);
         }
         ap = bp.resolve(file);
+        if (!Files.isReadable(ap)) {
+            throw new RuntimeException("Unable to read assignment file " + ap);
+        }
         return AssignmentFile.builder()
                 .assignment(assignment)
-                .content(readPathContent(ap))
+                .content(FileContent.of(ap))
                 .absoluteFile(ap)
                 .base(bp)
                 .file(file)
@@ -137,17 +155,33 @@ public class JavaAssignmentFileResolver {
     }
 
     private MediaType resolveMediaType(Path file) {
+        MediaTypeKey key;
         try {
-            TikaConfig config = TikaConfig.getDefaultConfig();
-            Detector detector = config.getDetector();
-
-            TikaInputStream stream = TikaInputStream.get(file);
+            key = new MediaTypeKey(file, Files.size(file), Files.getLastModifiedTime(file));
+        } catch (IOException e) {
+            log.warn("Unable to determine MediaType for {}, assuming text/plain.", file, e);
+            return MediaType.TEXT_PLAIN;
+        }
+        synchronized (MEDIA_TYPES) {
+            MediaType cached = MEDIA_TYPES.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        MediaType mediaType = detectMediaType(file);
+        synchronized (MEDIA_TYPES) {
+            MEDIA_TYPES.put(key, mediaType);
+        }
+        return mediaType;
+    }
 
-            Metadata metadata = new Metadata();
-            metadata.add(TikaCoreProperties.RESOURCE_NAME_KEY, file.getFileName().toString());
-            return detector.detect(stream, metadata);
+    private MediaType detectMediaType(Path file) {
+        Metadata metadata = new Metadata();
+        metadata.add(TikaCoreProperties.RESOURCE_NAME_KEY, file.getFileName().toString());
+        try (TikaInputStream stream = TikaInputStream.get(file)) {
+            return DETECTOR.detect(stream, metadata);
         } catch (Exception e) {
-            log.warn("Unable to determine MediaType for {}, assuming text/plain.", e);
+            log.warn("Unable to determine MediaType for {}, assuming text/plain.", file, e);
             return MediaType.TEXT_PLAIN;
         }
     }
@@ -160,11 +194,7 @@ public class JavaAssignmentFileResolver {
         return file.toString().substring(0, file.toString().indexOf(".")).replace(File.separatorChar, '.');
     }
 
-    private byte[] readPathContent(Path p) {
-        try {
-            return IOUtils.toByteArray(Files.newInputStream(p, StandardOpenOption.READ));
-        } catch (IOException e) {
-            throw new RuntimeException("Unable to read assignment file " + p, e);
-        }
+    // a file is only detected again when it changed
+    private record MediaTypeKey(Path file, long size, FileTime lastModified) {
     }
 }
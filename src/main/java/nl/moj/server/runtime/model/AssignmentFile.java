@@ -24,8 +24,10 @@ import org.apache.tika.mime.MediaType;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Getter;
 
 @Data
 @Builder(toBuilder = true)
@@ -37,7 +39,8 @@ public class AssignmentFile {
 
     private final String shortName;
 
-    private final byte[] content;
+    @Getter(AccessLevel.NONE)
+    private final FileContent content;
 
     private final AssignmentFileType fileType;
 
@@ -58,7 +61,34 @@ public class AssignmentFile {
         return mediaType.getBaseType().toString();
     }
 
+    /**
+     * @return the content, shared with all copies of this file, callers must not modify it.
+     */
+    public byte[] getContent() {
+        return content.getBytes();
+    }
+
+    /**
+     * @return the SHA-256 hash of the content.
+     */
+    @JsonIgnore
+    public String getContentHash() {
+        return content.getHash();
+    }
+
     public String getContentAsString() {
         return new String(getContent(), StandardCharsets.UTF_8);
     }
+
+    public static class AssignmentFileBuilder {
+
+        public AssignmentFileBuilder content(FileContent content) {
+            this.content = content;
+            return this;
+        }
+
+        public AssignmentFileBuilder content(byte[] content) {
+            return content(FileContent.of(content));
+        }
+    }
 }
@@ -0,0 +1,98 @@
+package nl.moj.server.runtime.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * The content of an {@link AssignmentFile}. Content backed by a file is only read on first use, copies of an
+ * assignment file made with {@code toBuilder()} share the same instance so it is read at most once. The content is
+ * identified by its SHA-256 hash.
+ */
+public final class FileContent {
+
+    private final Path file;
+    private volatile byte[] bytes;
+    private volatile String hash;
+
+    private FileContent(Path file, byte[] bytes) {
+        this.file = file;
+        this.bytes = bytes;
+    }
+
+    /**
+     * @return content that is read from the file on first use.
+     */
+    public static FileContent of(Path file) {
+        return new FileContent(file, null);
+    }
+
+    public static FileContent of(byte[] bytes) {
+        return new FileContent(null, bytes);
+    }
+
+    /**
+     * @return the content, callers must not modify it.
+     */
+    public byte[] getBytes() {
+        byte[] result = bytes;
+        if (result == null) {
+            synchronized (this) {
+                result = bytes;
+                if (result == null) {
+                    result = read();
+                    bytes = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    public String getHash() {
+        String result = hash;
+        if (result == null) {
+            result = HexFormat.of().formatHex(sha256().digest(getBytes()));
+            hash = result;
+        }
+        return result;
+    }
+
+    public boolean isLoaded() {
+        return bytes != null;
+    }
+
+    private byte[] read() {
+        try {
+            return Files.readAllBytes(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to read assignment file " + file, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof FileContent other && getHash().equals(other.getHash());
+    }
+
+    @Override
+    public int hashCode() {
+        return getHash().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return file != null ? file.toString() : bytes.length + " bytes";
+    }
+}
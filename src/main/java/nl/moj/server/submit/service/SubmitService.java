@@ -28,7 +28,6 @@ import java.util.stream.Collectors;
 import javax.transaction.Transactional;
 
 import org.springframework.cloud.sleuth.annotation.NewSpan;
-import org.springframework.jms.core.JmsTemplate;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
@@ -36,15 +35,17 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
 import nl.moj.common.messages.JMSCompileResponse;
-import nl.moj.common.messages.JMSFile;
 import nl.moj.common.messages.JMSSubmitRequest;
 import nl.moj.common.messages.JMSSubmitResponse;
 import nl.moj.common.messages.JMSTestCase;
 import nl.moj.common.messages.JMSTestCaseResult;
 import nl.moj.common.messages.JMSTestResponse;
+import nl.moj.common.messages.OperationQueue;
 import nl.moj.server.assignment.service.AssignmentService;
 import nl.moj.server.competition.model.CompetitionSession.SessionType;
 import nl.moj.server.message.service.MessageService;
+import nl.moj.server.message.service.OperationCancelService;
+import nl.moj.server.message.service.OperationRequestService;
 import nl.moj.server.metrics.MetricsService;
 import nl.moj.server.runtime.ScoreService;
 import nl.moj.server.runtime.TimersRuntime;
@@ -75,12 +76,13 @@ public class SubmitService {
     private final SubmitAttemptRepository submitAttemptRepository;
     private final ScoreService scoreService;
     private final AssignmentService assignmentService;
-    private final JmsTemplate jmsTemplate;
+    private final OperationRequestService operationRequestService;
     private final JMSResponseHelper responseHelper;
     private final TaskScheduler taskScheduler;
     private final TransactionHelper trx;
     private final TimersRuntime timersRuntime;
     private final MetricsService metricsService;
+    private final OperationCancelService operationCancelService;
 
     @Transactional
     public void receiveSubmitResponse(JMSSubmitResponse submitResponse) {
@@ -224,22 +226,25 @@ public class SubmitService {
                     SubmitAttempt submitAttempt = prepareSubmitAttempt(submitRequest, registered,
                             Duration.ofSeconds(secondsRemaining));
 
-                    jmsTemplate.convertAndSend("operation_request",
+                    boolean failFast = Boolean.TRUE.equals(assignmentService
+                            .resolveAssignmentDescriptor(submitRequest.getAssignment()).getScoringRules().getFailFast());
+                    List<TestCase> testCases = submitAttempt.getTestAttempt().getTestCases();
+                    if (failFast) {
+                        testCases = testService.orderByFailureRate(submitRequest.getAssignment(), testCases);
+                    }
+
+                    operationRequestService.send(OperationQueue.SUBMIT,
                             JMSSubmitRequest.builder().attempt(submitAttempt.getUuid())
                                     .assignment(submitRequest.getAssignment().getUuid())
-                                    .sources(submitRequest.getSources().entrySet().stream()
-                                            .map(e -> JMSFile.builder()
-                                                    .type(JMSFile.Type.SOURCE)
-                                                    .path(e.getKey().toString())
-                                                    .content(e.getValue())
-                                                    .build())
-                                            .collect(Collectors.toList()))
-                                    .tests(submitAttempt.getTestAttempt().getTestCases().stream()
+                                    .sources(operationRequestService.sources(submitRequest.getAssignment(),
+                                            submitRequest.getSources()))
+                                    .tests(testCases.stream()
                                             .map(tc -> JMSTestCase.builder()
                                                     .testCase(tc.getUuid())
                                                     .name(tc.getName())
                                                     .build())
                                             .collect(Collectors.toList()))
+                                    .failFast(failFast)
                                     .build());
 
                     // schedule controller abort
@@ -301,6 +306,8 @@ public class SubmitService {
                 if (sa != null && sa.getDateTimeEnd() == null && sa.getAssignmentStatus().getDateTimeEnd() == null) {
                     log.info("Aborting submit attempt {}, response took too long.", sa.getUuid());
                     receiveSubmitResponse(responseHelper.abortResponse(sa));
+                    // stop the worker from spending more time on it
+                    operationCancelService.cancel(List.of(sa.getUuid()), JMSResponseHelper.NO_RESPONSE);
                 }
             });
         }, Instant.now().plus(timeout));
@@ -23,13 +23,11 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.stream.Stream;
 
 import javax.transaction.Transactional;
 
-import org.apache.commons.io.IOUtils;
 import org.springframework.stereotype.Service;
 
 import lombok.RequiredArgsConstructor;
@@ -136,7 +134,7 @@ public class TeamService {
 
     private byte[] readPathContent(Path p) {
         try {
-            return IOUtils.toByteArray(Files.newInputStream(p, StandardOpenOption.READ));
+            return Files.readAllBytes(p);
         } catch (IOException e) {
             throw new RuntimeException(String.format("Unable to read file '%s'.", p), e);
         }
@@ -20,7 +20,10 @@ import java.time.Instant;
 import java.util.List;
 import java.util.UUID;
 
+import javax.persistence.LockModeType;
+
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
@@ -31,9 +34,20 @@ import nl.moj.server.test.model.TestAttempt;
 public interface TestAttemptRepository extends JpaRepository<TestAttempt, Long> {
     TestAttempt findByUuid(UUID testAttemptUuid);
 
+    // partial and final responses of an attempt are received concurrently, the lock makes them wait for each other
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query(value = "select ta from TestAttempt ta where ta.uuid = ?1")
+    TestAttempt findByUuidForUpdate(UUID testAttemptUuid);
+
     List<TestAttempt> findByAssignmentStatus(TeamAssignmentStatus assignment);
 
     @Query(value = "select count(ca) from TestAttempt ca " +
             "where ca.assignmentStatus = ?1 and ca.dateTimeRegister > ?2")
     long countNewerAttempts(TeamAssignmentStatus tas, Instant dateRegistered);
+
+    // test attempts that are part of a submit attempt are never superseded
+    @Query(value = "select ta from TestAttempt ta " +
+            "where ta.assignmentStatus = ?1 and ta.id < ?2 and ta.dateTimeEnd is null " +
+            "and not exists (select sa from SubmitAttempt sa where sa.testAttempt = ta)")
+    List<TestAttempt> findPendingTestOnlyAttempts(TeamAssignmentStatus tas, Long before);
 }
@@ -19,8 +19,10 @@ package nl.moj.server.test.repository;
 import java.util.List;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import nl.moj.server.assignment.model.Assignment;
 import nl.moj.server.test.model.TestAttempt;
 import nl.moj.server.test.model.TestCase;
 
@@ -28,4 +30,19 @@ import nl.moj.server.test.model.TestCase;
 public interface TestCaseRepository extends JpaRepository<TestCase, Long> {
 
     List<TestCase> findByTestAttempt(TestAttempt testAttempt);
+
+    // aborted test cases did not run to completion, they say nothing about the test
+    @Query(value = "select tc.name as name, count(tc) as runs, " +
+            "sum(case when tc.success = true then 0 else 1 end) as failures from TestCase tc " +
+            "where tc.testAttempt.assignmentStatus.assignment = ?1 and tc.dateTimeEnd is not null " +
+            "and (tc.aborted is null or tc.aborted = false) group by tc.name")
+    List<TestCaseStatistics> findTestCaseStatistics(Assignment assignment);
+
+    interface TestCaseStatistics {
+        String getName();
+
+        long getRuns();
+
+        long getFailures();
+    }
 }
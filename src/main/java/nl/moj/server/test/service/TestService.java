@@ -19,25 +19,32 @@ package nl.moj.server.test.service;
 import java.io.IOException;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
 
 import javax.transaction.Transactional;
 
 import org.springframework.cloud.sleuth.annotation.NewSpan;
-import org.springframework.jms.core.JmsTemplate;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.stereotype.Service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.messages.*;
+import nl.moj.server.assignment.model.Assignment;
 import nl.moj.server.assignment.service.AssignmentService;
 import nl.moj.server.compiler.model.CompileAttempt;
 import nl.moj.server.compiler.service.CompileRequest;
 import nl.moj.server.compiler.service.CompileService;
 import nl.moj.server.message.service.MessageService;
+import nl.moj.server.message.service.OperationCancelService;
+import nl.moj.server.message.service.OperationRequestService;
 import nl.moj.server.metrics.MetricsService;
 import nl.moj.server.runtime.model.AssignmentFile;
 import nl.moj.server.runtime.model.TeamAssignmentStatus;
@@ -60,23 +67,25 @@ public class TestService {
     private final TestAttemptRepository testAttemptRepository;
     private final TeamAssignmentStatusRepository teamAssignmentStatusRepository;
     private final TeamService teamService;
-    private final JmsTemplate jmsTemplate;
+    private final OperationRequestService operationRequestService;
     private final MessageService messageService;
     private final JMSResponseHelper responseHelper;
     private final AssignmentService assignmentService;
     private final TaskScheduler taskScheduler;
     private final TransactionHelper trx;
     private final MetricsService metricsService;
+    private final OperationCancelService operationCancelService;
 
     @Transactional
     public void receiveTestResponse(JMSTestResponse testResponse) {
         log.info("Received test attempt response {}", testResponse.getAttempt());
-        TestAttempt testAttempt = testAttemptRepository.findByUuid(testResponse.getAttempt());
+        TestAttempt testAttempt = testAttemptRepository.findByUuidForUpdate(testResponse.getAttempt());
 
         if (testAttempt.getDateTimeEnd() == null) {
+            Set<UUID> sent = sentAsProgress(testAttempt);
             testAttempt = update(testAttempt, testResponse);
             if (isMostRecent(testAttempt)) {
-                messageService.sendTestFeedback(testAttempt);
+                messageService.sendTestFeedback(testAttempt, sent);
             } else {
                 log.info("Ignoring test feedback for test attempt {}, already a newer test attempt pending.",
                         testAttempt.getUuid());
@@ -87,6 +96,52 @@ public class TestService {
         }
     }
 
+    /**
+     * Stores and sends a partial result of a test attempt. Partial results arriving after the attempt ended, by its
+     * final response or an abort, are ignored. The attempt is locked, so a partial result received at the same time
+     * as the final response is handled either before or after it.
+     */
+    @Transactional
+    public void receiveTestProgressResponse(JMSTestProgressResponse progressResponse) {
+        TestAttempt testAttempt = testAttemptRepository.findByUuidForUpdate(progressResponse.getAttempt());
+        if (testAttempt == null || testAttempt.getDateTimeEnd() != null) {
+            log.info("Ignoring partial result for test attempt {}, already ended.", progressResponse.getAttempt());
+            return;
+        }
+        boolean mostRecent = isMostRecent(testAttempt);
+        CompileAttempt compileAttempt = testAttempt.getCompileAttempt();
+        if (progressResponse.getCompileResponse() != null && compileAttempt.getDateTimeEnd() == null) {
+            compileService.update(compileAttempt, progressResponse.getCompileResponse());
+            if (mostRecent) {
+                messageService.sendCompileFeedback(compileAttempt);
+            }
+        }
+        JMSTestCaseResult tcr = progressResponse.getTestCaseResult();
+        if (tcr != null) {
+            testAttempt.getTestCases().stream()
+                    .filter(tc -> tc.getUuid().equals(tcr.getTestCase()) && tc.getDateTimeEnd() == null)
+                    .findFirst()
+                    .ifPresent(tc -> {
+                        update(tc, tcr);
+                        if (mostRecent) {
+                            messageService.sendTestFeedback(tc);
+                        }
+                    });
+        }
+    }
+
+    // partial results are stored as they arrive, an ended compile attempt or test case has been sent already
+    private Set<UUID> sentAsProgress(TestAttempt testAttempt) {
+        Set<UUID> sent = new HashSet<>();
+        if (testAttempt.getCompileAttempt() != null && testAttempt.getCompileAttempt().getDateTimeEnd() != null) {
+            sent.add(testAttempt.getCompileAttempt().getUuid());
+        }
+        testAttempt.getTestCases().stream()
+                .filter(tc -> tc.getDateTimeEnd() != null)
+                .forEach(tc -> sent.add(tc.getUuid()));
+        return sent;
+    }
+
     private boolean isMostRecent(TestAttempt testAttempt) {
         return testAttemptRepository.countNewerAttempts(testAttempt.getAssignmentStatus(),
                 testAttempt.getDateTimeRegister()) == 0;
@@ -105,15 +160,17 @@ public class TestService {
                     testRequest.getAssignment().getUuid(), testRequest.getSources());
 
             TestAttempt testAttempt = prepareTestAttempt(testRequest);
+            // a test compiles as well, older pending compiles and tests are of no use anymore
+            List<UUID> superseded = new ArrayList<>(
+                    compileService.supersedePendingAttempts(testAttempt.getCompileAttempt()));
+            superseded.addAll(supersedePendingAttempts(testAttempt));
+            operationCancelService.cancel(superseded, JMSResponseHelper.SUPERSEDED);
+
             // send JMS test request
-            jmsTemplate.convertAndSend("operation_request", JMSTestRequest.builder()
+            operationRequestService.send(OperationQueue.TEST, JMSTestRequest.builder()
                     .attempt(testAttempt.getUuid())
                     .assignment(testRequest.getAssignment().getUuid())
-                    .sources(testRequest.getSources().entrySet().stream().map(e -> JMSFile.builder()
-                            .type(JMSFile.Type.SOURCE)
-                            .path(e.getKey().toString())
-                            .content(e.getValue())
-                            .build()).collect(Collectors.toList()))
+                    .sources(operationRequestService.sources(testRequest.getAssignment(), testRequest.getSources()))
                     .tests(testAttempt.getTestCases()
                             .stream()
                             .map(tc -> JMSTestCase.builder().testCase(tc.getUuid()).name(tc.getName()).build())
@@ -176,9 +233,40 @@ public class TestService {
         return testAttempt;
     }
 
+    /**
+     * Orders test cases by how often they failed in earlier attempts of all teams, most failing first. Test cases
+     * without history keep their order after the ones that failed before.
+     */
+    public List<TestCase> orderByFailureRate(Assignment assignment, List<TestCase> testCases) {
+        Map<String, Double> failureRates = testCaseRepository.findTestCaseStatistics(assignment).stream()
+                .filter(s -> s.getRuns() > 0)
+                .collect(Collectors.toMap(TestCaseRepository.TestCaseStatistics::getName,
+                        s -> (double) s.getFailures() / s.getRuns()));
+        return testCases.stream()
+                .sorted(Comparator.comparingDouble(tc -> -failureRates.getOrDefault(tc.getName(), 0.0)))
+                .toList();
+    }
+
+    /**
+     * Ends all test attempts of the same team and assignment registered before the given one that are still waiting
+     * for a response. Test attempts that are part of a submit are left alone.
+     *
+     * @return the superseded test attempts.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public List<UUID> supersedePendingAttempts(TestAttempt newer) {
+        List<UUID> superseded = testAttemptRepository.findPendingTestOnlyAttempts(newer.getAssignmentStatus(),
+                newer.getId())
+                .stream()
+                .map(ta -> update(ta, responseHelper.supersededResponse(ta)).getUuid())
+                .toList();
+        metricsService.registerSupersededAttempts(OperationQueue.TEST, superseded.size());
+        return superseded;
+    }
+
     @Transactional
     public TestAttempt registerTestResponse(JMSTestResponse testResponse) {
-        TestAttempt testAttempt = testAttemptRepository.findByUuid(testResponse.getAttempt());
+        TestAttempt testAttempt = testAttemptRepository.findByUuidForUpdate(testResponse.getAttempt());
 
         if (testAttempt.getDateTimeEnd() != null) {
             log.info("Ignoring response for test attempt {}, already have a response.", testAttempt.getUuid());
@@ -211,17 +299,7 @@ public class TestService {
         if (testAttempt.getTestCases() != null) {
             for (TestCase tc : testAttempt.getTestCases()) {
                 if (testCaseResults.containsKey(tc.getUuid())) {
-                    JMSTestCaseResult tcr = testCaseResults.get(tc.getUuid());
-                    tc.setWorker(tcr.getWorker());
-                    tc.setTrace(tcr.getTraceId());
-                    tc.setTestOutput(tcr.getOutput());
-                    tc.setDateTimeStart(tcr.getStarted());
-                    tc.setDateTimeEnd(tcr.getEnded());
-                    tc.setSuccess(tcr.isSuccess());
-                    tc.setTimeout(tcr.isTimeout());
-                    tc.setAborted(tcr.isAborted());
-                    tc.setReason(tcr.getReason());
-                    testCaseRepository.save(tc);
+                    update(tc, testCaseResults.get(tc.getUuid()));
                 }
             }
         }
@@ -229,15 +307,30 @@ public class TestService {
         return testAttemptRepository.save(testAttempt);
     }
 
+    private void update(TestCase tc, JMSTestCaseResult tcr) {
+        tc.setWorker(tcr.getWorker());
+        tc.setTrace(tcr.getTraceId());
+        tc.setTestOutput(tcr.getOutput());
+        tc.setDateTimeStart(tcr.getStarted());
+        tc.setDateTimeEnd(tcr.getEnded());
+        tc.setSuccess(tcr.isSuccess());
+        tc.setTimeout(tcr.isTimeout());
+        tc.setAborted(tcr.isAborted());
+        tc.setReason(tcr.getReason());
+        testCaseRepository.save(tc);
+    }
+
     private void scheduleAbort(TestAttempt testAttempt) {
         Duration timeout = assignmentService.resolveTestAbortTimout(testAttempt.getAssignmentStatus().getAssignment(),
                 testAttempt.getTestCases().size());
         taskScheduler.schedule(() -> {
             trx.required(() -> {
-                TestAttempt ta = testAttemptRepository.findByUuid(testAttempt.getUuid());
+                TestAttempt ta = testAttemptRepository.findByUuidForUpdate(testAttempt.getUuid());
                 if (ta != null && ta.getDateTimeEnd() == null && ta.getAssignmentStatus().getDateTimeEnd() == null) {
                     log.info("Aborting test attempt {}, response took too long.", ta.getUuid());
                     receiveTestResponse(responseHelper.abortResponse(ta));
+                    // stop the worker from spending more time on it
+                    operationCancelService.cancel(List.of(ta.getUuid()), JMSResponseHelper.NO_RESPONSE);
                 }
             });
         }, Instant.now().plus(timeout));
@@ -16,10 +16,39 @@ import nl.moj.server.test.model.TestAttempt;
 @Service
 public class JMSResponseHelper {
 
+    public static final String SUPERSEDED = "Superseded by a newer attempt.";
+    public static final String NO_RESPONSE = "No response received.";
+
     private static final String ABORT_WORKER = "<abort-worker>";
 
     @Transactional(Transactional.TxType.MANDATORY)
     public JMSCompileResponse abortResponse(CompileAttempt ca) {
+        return abortResponse(ca, "Compiling timed out.", NO_RESPONSE);
+    }
+
+    @Transactional(Transactional.TxType.MANDATORY)
+    public JMSTestResponse abortResponse(TestAttempt ta) {
+        return abortResponse(ta, "Test timed out.", "Testing timed out.", NO_RESPONSE,
+                abortResponse(ta.getCompileAttempt()));
+    }
+
+    /**
+     * Response for an attempt that will not be run because a newer attempt of the same team replaced it.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public JMSCompileResponse supersededResponse(CompileAttempt ca) {
+        return abortResponse(ca, SUPERSEDED, SUPERSEDED);
+    }
+
+    /**
+     * Response for an attempt that will not be run because a newer attempt of the same team replaced it.
+     */
+    @Transactional(Transactional.TxType.MANDATORY)
+    public JMSTestResponse supersededResponse(TestAttempt ta) {
+        return abortResponse(ta, SUPERSEDED, SUPERSEDED, SUPERSEDED, supersededResponse(ta.getCompileAttempt()));
+    }
+
+    private JMSCompileResponse abortResponse(CompileAttempt ca, String output, String reason) {
         return JMSCompileResponse.builder()
                 .attempt(ca.getUuid())
                 .worker(ABORT_WORKER)
@@ -28,13 +57,13 @@ public class JMSResponseHelper {
                 .aborted(true)
                 .started(ca.getDateTimeRegister())
                 .ended(Instant.now())
-                .output("Compiling timed out.")
-                .reason("No response received.")
+                .output(output)
+                .reason(reason)
                 .build();
     }
 
-    @Transactional(Transactional.TxType.MANDATORY)
-    public JMSTestResponse abortResponse(TestAttempt ta) {
+    private JMSTestResponse abortResponse(TestAttempt ta, String output, String reason, String testCaseReason,
+            JMSCompileResponse compileResponse) {
         List<JMSTestCaseResult> tcs = new ArrayList<>();
         ta.getTestCases().forEach(tc -> {
             tcs.add(JMSTestCaseResult.builder()
@@ -45,8 +74,8 @@ public class JMSResponseHelper {
                     .timeout(false)
                     .started(tc.getDateTimeRegister())
                     .ended(Instant.now())
-                    .output("Test timed out.")
-                    .reason("No response received.")
+                    .output(output)
+                    .reason(testCaseReason)
                     .build());
         });
 
@@ -56,9 +85,9 @@ public class JMSResponseHelper {
                 .aborted(true)
                 .started(ta.getDateTimeRegister())
                 .ended(Instant.now())
-                .reason("Testing timed out.")
+                .reason(reason)
                 .testCaseResults(tcs)
-                .compileResponse(abortResponse(ta.getCompileAttempt()))
+                .compileResponse(compileResponse)
                 .build();
     }
 
@@ -70,7 +99,7 @@ public class JMSResponseHelper {
                 .aborted(true)
                 .started(sa.getDateTimeRegister())
                 .ended(Instant.now())
-                .reason("No response received.")
+                .reason(NO_RESPONSE)
                 .testResponse(abortResponse(sa.getTestAttempt()))
                 .build();
     }
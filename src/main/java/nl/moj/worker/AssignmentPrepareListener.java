@@ -0,0 +1,109 @@
+package nl.moj.worker;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.jms.annotation.JmsListener;
+import org.springframework.jms.core.JmsTemplate;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.messages.JMSPrepareRequest;
+import nl.moj.common.messages.JMSPrepareResponse;
+import nl.moj.common.messages.JMSTestCase;
+import nl.moj.common.messages.JMSTestCaseResult;
+import nl.moj.common.messages.JMSTestRequest;
+import nl.moj.common.messages.JMSTestResponse;
+import nl.moj.worker.java.JavaService;
+
+/**
+ * Gets the worker ready for an assignment before teams start sending requests for it. The assignment is fetched, the
+ * workspace template is created and the original sources are compiled and tested, which fills the compile cache and
+ * starts the test runners. The outcome of this canary run is reported to the controller, test failures are expected,
+ * the original sources are not a solution.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AssignmentPrepareListener {
+
+    private static final String RESPONSE_DESTINATION = "operation_response";
+    private static final long CAPACITY_TIMEOUT_SECONDS = 60;
+
+    private final JmsTemplate jmsTemplate;
+    private final JavaService javaService;
+    private final ExecutionService executionService;
+    private final WorkerService workerService;
+
+    @JmsListener(destination = JMSPrepareRequest.DESTINATION, containerFactory = "topicListenerContainerFactory")
+    public void receivePrepareRequest(JMSPrepareRequest request) {
+        log.info("Preparing assignment {}.", request.getAssignment());
+        Instant started = Instant.now();
+        String problem;
+        try {
+            problem = canary(request);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            problem = "Interrupted";
+        } catch (Exception e) {
+            log.error("Preparing assignment {} failed.", request.getAssignment(), e);
+            problem = e instanceof CompletionException && e.getCause() != null
+                    ? e.getCause().getMessage()
+                    : e.getMessage();
+        }
+        JMSPrepareResponse response = JMSPrepareResponse.builder()
+                .attempt(request.getId())
+                .worker(workerService.getWorkerIdentification())
+                .assignment(request.getAssignment())
+                .ready(problem == null)
+                .reason(problem)
+                .started(started)
+                .ended(Instant.now())
+                .build();
+        log.info("Prepared assignment {}: {}", request.getAssignment(), response);
+        jmsTemplate.convertAndSend(RESPONSE_DESTINATION, response);
+    }
+
+    // runs like a request, so it never takes capacity teams are already using
+    private String canary(JMSPrepareRequest request) throws InterruptedException {
+        if (!executionService.acquireCapacity(CAPACITY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            return "No capacity available to run the canary";
+        }
+        try {
+            JMSTestResponse response = javaService.test(JMSTestRequest.builder()
+                    .attempt(request.getId())
+                    .assignment(request.getAssignment())
+                    .tests(request.getTests())
+                    .sources(List.of())
+                    .build(), null, progress -> {
+                    }).join();
+            return problem(request, response);
+        } finally {
+            executionService.releaseCapacity();
+        }
+    }
+
+    private String problem(JMSPrepareRequest request, JMSTestResponse response) {
+        if (response.isAborted()) {
+            return response.getReason();
+        }
+        if (response.getCompileResponse() == null || !response.getCompileResponse().isSuccess()) {
+            return "Original sources do not compile";
+        }
+        for (JMSTestCaseResult result : response.getTestCaseResults()) {
+            if (result.isAborted() || result.isTimeout()) {
+                String name = request.getTests().stream()
+                        .filter(tc -> tc.getTestCase().equals(result.getTestCase()))
+                        .map(JMSTestCase::getName)
+                        .findFirst()
+                        .orElse(String.valueOf(result.getTestCase()));
+                return "Test " + name + " did not run: "
+                        + (result.isTimeout() ? "timed out" : result.getReason());
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,201 @@
+package nl.moj.worker;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.springframework.jms.annotation.JmsListener;
+import org.springframework.stereotype.Service;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.listener.ProcessListener;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.messages.JMSCancelRequest;
+
+/**
+ * Keeps track of the attempts the controller cancelled. Work for a cancelled attempt is skipped when it has not
+ * started yet, threads working on a cancelled attempt are interrupted and the process trees they started are
+ * destroyed. Cancellations are forgotten after a while, by then any request for the attempt has long been received.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CancellationService {
+
+    private static final Duration RETENTION = Duration.ofMinutes(10);
+
+    private final MeterRegistry meterRegistry;
+
+    // in order of cancellation, so expired entries are at the head
+    private final Map<UUID, Cancellation> cancelled = new LinkedHashMap<>();
+    private final Map<UUID, Set<Thread>> running = new HashMap<>();
+    private final Map<UUID, Set<Process>> processes = new HashMap<>();
+    private final Map<UUID, CompletableFuture<String>> waiting = new HashMap<>();
+    // the attempt the current thread is working on, to attribute the processes it starts
+    private final ThreadLocal<UUID> current = new ThreadLocal<>();
+    private final ProcessListener processListener = new ProcessListener() {
+        @Override
+        public void afterStart(Process process, ProcessExecutor executor) {
+            started(process);
+        }
+
+        @Override
+        public void afterFinish(Process process, ProcessResult result) {
+            finished(process);
+        }
+
+        @Override
+        public void afterStop(Process process) {
+            finished(process);
+        }
+    };
+
+    @JmsListener(destination = JMSCancelRequest.DESTINATION, containerFactory = "topicListenerContainerFactory")
+    public void receiveCancelRequest(JMSCancelRequest request) {
+        log.info("Received cancel request for attempts {}: {}", request.getAttempts(), request.getReason());
+        request.getAttempts().forEach(attempt -> cancel(attempt, request.getReason()));
+    }
+
+    public synchronized void cancel(UUID attempt, String reason) {
+        purge();
+        cancelled.putIfAbsent(attempt, new Cancellation(Instant.now(), reason));
+        Set<Thread> threads = running.getOrDefault(attempt, Set.of());
+        if (!threads.isEmpty()) {
+            log.info("Interrupting {} running task(s) of cancelled attempt {}.", threads.size(), attempt);
+            threads.forEach(Thread::interrupt);
+            meterRegistry.counter("moj.worker.cancelled", "state", "running").increment(threads.size());
+        }
+        processes.getOrDefault(attempt, Set.of()).forEach(this::destroy);
+        CompletableFuture<String> future = waiting.remove(attempt);
+        if (future != null) {
+            future.complete(reason);
+        }
+    }
+
+    /**
+     * @return a future that completes with the reason when the attempt is cancelled.
+     */
+    public synchronized CompletableFuture<String> whenCancelled(UUID attempt) {
+        Cancellation cancellation = cancelled.get(attempt);
+        if (cancellation != null) {
+            return CompletableFuture.completedFuture(cancellation.reason());
+        }
+        return waiting.computeIfAbsent(attempt, k -> new CompletableFuture<>());
+    }
+
+    /**
+     * Stops tracking an attempt whose response has been sent.
+     */
+    public synchronized void done(UUID attempt) {
+        waiting.remove(attempt);
+    }
+
+    /**
+     * @return a listener to add to process executors, processes started while working on an attempt are destroyed
+     *         together with their descendants when the attempt is cancelled.
+     */
+    public ProcessListener processListener() {
+        return processListener;
+    }
+
+    /**
+     * @return true if the attempt the current thread is working on was cancelled, its processes may have been
+     *         destroyed halfway.
+     */
+    public synchronized boolean isCancelled() {
+        UUID attempt = current.get();
+        return attempt != null && cancelled.containsKey(attempt);
+    }
+
+    /**
+     * @throws CancellationException if the attempt was cancelled.
+     */
+    public synchronized void check(UUID attempt) {
+        Cancellation cancellation = cancelled.get(attempt);
+        if (cancellation != null) {
+            log.info("Skipping cancelled attempt {}.", attempt);
+            meterRegistry.counter("moj.worker.cancelled", "state", "queued").increment();
+            throw new CancellationException(cancellation.reason());
+        }
+    }
+
+    /**
+     * Runs the work for an attempt on the current thread, the thread is interrupted when the attempt is cancelled
+     * while running.
+     *
+     * @throws CancellationException if the attempt was cancelled before the work started.
+     */
+    public <T> T run(UUID attempt, Supplier<T> work) {
+        Thread thread = Thread.currentThread();
+        synchronized (this) {
+            check(attempt);
+            running.computeIfAbsent(attempt, k -> new HashSet<>()).add(thread);
+        }
+        current.set(attempt);
+        try {
+            return work.get();
+        } finally {
+            current.remove();
+            synchronized (this) {
+                Set<Thread> threads = running.get(attempt);
+                threads.remove(thread);
+                if (threads.isEmpty()) {
+                    running.remove(attempt);
+                }
+                // pooled threads must not carry the interrupt over to the next task
+                if (cancelled.containsKey(attempt)) {
+                    Thread.interrupted();
+                }
+            }
+        }
+    }
+
+    private synchronized void started(Process process) {
+        UUID attempt = current.get();
+        if (attempt == null) {
+            return;
+        }
+        if (cancelled.containsKey(attempt)) {
+            destroy(process);
+        } else {
+            processes.computeIfAbsent(attempt, k -> new HashSet<>()).add(process);
+        }
+    }
+
+    // may be called from the thread waiting for the process, look the process up
+    private synchronized void finished(Process process) {
+        processes.values().removeIf(started -> started.remove(process) && started.isEmpty());
+    }
+
+    // descendants first, they would be orphaned when the parent goes
+    private void destroy(Process process) {
+        log.info("Destroying process {} of a cancelled attempt.", process.pid());
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+        meterRegistry.counter("moj.worker.process.killed", "reason", "cancelled").increment();
+    }
+
+    // must hold the lock
+    private void purge() {
+        Instant expired = Instant.now().minus(RETENTION);
+        Iterator<Cancellation> it = cancelled.values().iterator();
+        while (it.hasNext() && it.next().cancelled().isBefore(expired)) {
+            it.remove();
+        }
+    }
+
+    private record Cancellation(Instant cancelled, String reason) {
+    }
+}
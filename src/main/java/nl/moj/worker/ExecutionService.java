@@ -16,30 +16,83 @@
 */
 package nl.moj.worker;
 
+import java.util.UUID;
 import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
 import nl.moj.common.assignment.descriptor.ExecutionModel;
+import nl.moj.common.config.properties.MojServerProperties;
 
 @Service
 @Slf4j
 public class ExecutionService {
 
-    private final Executor sequential;
     private final Executor parallel;
+    // sequential assignments run the compile and tests of an attempt one after the other on the parallel executor
+    private final KeyedSerialExecutor sequential;
+    private final DistributionSummary laneQueueLength;
 
-    public ExecutionService(@Qualifier("sequential") Executor sequential, @Qualifier("parallel") Executor parallel) {
-        this.sequential = sequential;
+    // one permit per game thread, a request holds one while it is handled
+    private final Semaphore capacity;
+
+    public ExecutionService(@Qualifier("parallel") Executor parallel, MojServerProperties mojServerProperties,
+            MeterRegistry meterRegistry) {
+        int gameThreads = mojServerProperties.getRuntime().getGameThreads();
+        Integer maxLanes = mojServerProperties.getWorker().getSequential().getMaxLanes();
         this.parallel = parallel;
+        // capacity already caps attempts at the number of game threads, a lane cap only matters below it
+        this.sequential = new KeyedSerialExecutor(parallel,
+                maxLanes != null ? maxLanes : Math.max(1, gameThreads / 2));
+        this.capacity = new Semaphore(gameThreads);
+
+        Gauge.builder("moj.worker.sequential.lanes", sequential, KeyedSerialExecutor::getLaneCount)
+                .description("Attempts of sequential assignments with work running or waiting")
+                .register(meterRegistry);
+        Gauge.builder("moj.worker.sequential.queued", sequential, KeyedSerialExecutor::getQueuedCount)
+                .description("Work of sequential assignments waiting for its attempt or a free lane")
+                .register(meterRegistry);
+        this.laneQueueLength = DistributionSummary.builder("moj.worker.sequential.lane.queue")
+                .description("Work already queued for the attempt when new work is added")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Claims capacity to handle a request, waiting at most the given time for it.
+     *
+     * @return true if capacity was claimed, it must be released once the request has been handled.
+     */
+    public boolean acquireCapacity(long timeout, TimeUnit unit) throws InterruptedException {
+        return capacity.tryAcquire(timeout, unit);
+    }
+
+    public void releaseCapacity() {
+        capacity.release();
+    }
+
+    public int getAvailableCapacity() {
+        return capacity.availablePermits();
     }
 
-    public Executor getExecutor(AssignmentDescriptor ad) {
+    /**
+     * @return the executor to run the work of the given attempt on. For sequential assignments this runs the work of
+     *         the attempt in order, one at a time, other attempts run in parallel to it.
+     */
+    public Executor getExecutor(AssignmentDescriptor ad, UUID attempt) {
         if (ad.getExecutionModel() == ExecutionModel.SEQUENTIAL) {
-            return sequential;
+            Executor lane = sequential.lane(attempt);
+            return task -> {
+                laneQueueLength.record(sequential.getQueueLength(attempt));
+                lane.execute(task);
+            };
         }
         return parallel;
     }
@@ -0,0 +1,149 @@
+package nl.moj.worker;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs the tasks submitted for the same key one after the other, in submission order, on a shared executor. Tasks of
+ * different keys run in parallel, but at most {@code maxActive} keys have a task running at any time. Keys waiting
+ * for a slot are served round-robin, a key gives up its slot after every task.
+ * <p>
+ * Tasks the shared executor rejects, for example while it shuts down, run on the thread that submitted or scheduled
+ * them instead. They keep their slot and order, so whoever waits for them is not left waiting forever.
+ */
+@Slf4j
+public class KeyedSerialExecutor {
+
+    private final Executor delegate;
+    private final int maxActive;
+
+    private final Map<Object, Lane> lanes = new HashMap<>();
+    private final Queue<Lane> ready = new ArrayDeque<>();
+    private int active;
+    private int queued;
+
+    public KeyedSerialExecutor(Executor delegate, int maxActive) {
+        if (maxActive < 1) {
+            throw new IllegalArgumentException("maxActive must be at least 1, was " + maxActive);
+        }
+        this.delegate = delegate;
+        this.maxActive = maxActive;
+    }
+
+    /**
+     * @return an executor that runs its tasks serially with all other tasks submitted for the same key.
+     */
+    public Executor lane(Object key) {
+        return task -> submit(key, task);
+    }
+
+    /**
+     * @return the number of keys with tasks running or waiting.
+     */
+    public synchronized int getLaneCount() {
+        return lanes.size();
+    }
+
+    /**
+     * @return the number of tasks waiting, over all keys.
+     */
+    public synchronized int getQueuedCount() {
+        return queued;
+    }
+
+    /**
+     * @return the number of tasks waiting for the given key, including the one running.
+     */
+    public synchronized int getQueueLength(Object key) {
+        Lane lane = lanes.get(key);
+        return lane == null ? 0 : lane.tasks.size() + (lane.running ? 1 : 0);
+    }
+
+    private void submit(Object key, Runnable task) {
+        List<Scheduled> rejected;
+        synchronized (this) {
+            Lane lane = lanes.computeIfAbsent(key, Lane::new);
+            lane.tasks.add(task);
+            queued++;
+            if (!lane.running && !lane.ready) {
+                lane.ready = true;
+                ready.add(lane);
+            }
+            rejected = schedule();
+        }
+        run(rejected);
+    }
+
+    // must hold the lock, returns the tasks the delegate rejected, to run once the lock is released
+    private List<Scheduled> schedule() {
+        List<Scheduled> rejected = List.of();
+        while (active < maxActive && !ready.isEmpty()) {
+            Lane lane = ready.poll();
+            lane.ready = false;
+            lane.running = true;
+            Scheduled scheduled = new Scheduled(lane, lane.tasks.poll());
+            queued--;
+            active++;
+            try {
+                delegate.execute(() -> run(List.of(scheduled)));
+            } catch (RejectedExecutionException e) {
+                log.warn("Executor rejected task for {}, running it on the current thread.", lane.key);
+                if (rejected.isEmpty()) {
+                    rejected = new ArrayList<>();
+                }
+                rejected.add(scheduled);
+            }
+        }
+        return rejected;
+    }
+
+    // also runs the tasks scheduled after these that the delegate rejects
+    private void run(List<Scheduled> tasks) {
+        Deque<Scheduled> pending = new ArrayDeque<>(tasks);
+        while (!pending.isEmpty()) {
+            Scheduled scheduled = pending.poll();
+            try {
+                scheduled.task().run();
+            } catch (RuntimeException e) {
+                log.error("Task for {} failed.", scheduled.lane().key, e);
+            } finally {
+                pending.addAll(done(scheduled.lane()));
+            }
+        }
+    }
+
+    private synchronized List<Scheduled> done(Lane lane) {
+        active--;
+        lane.running = false;
+        if (lane.tasks.isEmpty()) {
+            lanes.remove(lane.key);
+        } else {
+            lane.ready = true;
+            ready.add(lane);
+        }
+        return schedule();
+    }
+
+    private record Scheduled(Lane lane, Runnable task) {
+    }
+
+    private static class Lane {
+        private final Object key;
+        private final Queue<Runnable> tasks = new ArrayDeque<>();
+        private boolean running;
+        private boolean ready;
+
+        private Lane(Object key) {
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package nl.moj.worker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+
+import org.apache.activemq.artemis.api.jms.ActiveMQJMSConstants;
+import org.springframework.cloud.sleuth.Span;
+import org.springframework.cloud.sleuth.Tracer;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Component;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.messages.JMSRequest;
+import nl.moj.common.messages.OperationMessageConverter;
+import nl.moj.common.messages.OperationQueue;
+
+/**
+ * Consumes operation requests on a single thread and hands them to the {@link OperationListener} without waiting
+ * for them to be handled. A request is only received when the {@link ExecutionService} has capacity for it, so the
+ * worker never takes more requests from the queues than it can run. Queues are read in {@link OperationQueue}
+ * order. Each request is acknowledged individually once its response has been sent, a request of a worker that dies
+ * is redelivered to another. Responses are sent in the {@link nl.moj.common.messages.MessageCodec} of the request.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OperationConsumer implements SmartLifecycle {
+
+    private static final long RECEIVE_TIMEOUT_MILLIS = 250;
+    private static final long IDLE_RECEIVE_TIMEOUT_MILLIS = 100;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+    private static final long SHUTDOWN_TIMEOUT_MILLIS = 30000;
+
+    private final ConnectionFactory connectionFactory;
+    private final OperationMessageConverter messageConverter;
+    private final OperationListener operationListener;
+    private final ExecutionService executionService;
+    private final Tracer tracer;
+    private final MeterRegistry meterRegistry;
+
+    // messages are only acknowledged from the consumer thread, sessions are not thread safe
+    private final Queue<Message> handled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private volatile boolean running;
+    private Thread thread;
+    private Connection connection;
+    private Session session;
+
+    @Override
+    public synchronized void start() {
+        Gauge.builder("moj.worker.capacity.available", executionService, ExecutionService::getAvailableCapacity)
+                .register(meterRegistry);
+        running = true;
+        thread = new Thread(this::consume, "operation-consumer");
+        thread.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            try {
+                thread.join(SHUTDOWN_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void consume() {
+        while (running) {
+            try {
+                List<MessageConsumer> consumers = connect();
+                while (running) {
+                    acknowledgeHandled();
+                    if (!executionService.acquireCapacity(RECEIVE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        continue;
+                    }
+                    Message message;
+                    try {
+                        message = receive(consumers);
+                    } catch (JMSException e) {
+                        executionService.releaseCapacity();
+                        throw e;
+                    }
+                    if (message == null) {
+                        executionService.releaseCapacity();
+                    } else {
+                        dispatch(message);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            } catch (Exception e) {
+                if (running) {
+                    log.error("Consuming operation requests failed, reconnecting.", e);
+                    disconnect();
+                    sleep();
+                }
+            }
+        }
+        awaitInFlight();
+        acknowledgeHandled();
+        disconnect();
+    }
+
+    // like a listener container, let requests being handled send their response before disconnecting
+    private void awaitInFlight() {
+        long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+        while (inFlight.get() > 0 && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(RECEIVE_TIMEOUT_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        if (inFlight.get() > 0) {
+            log.warn("Stopped consuming with {} operation requests still being handled.", inFlight.get());
+        }
+    }
+
+    // take from the first queue that has a request, wait on the most important one when all are empty
+    private Message receive(List<MessageConsumer> consumers) throws JMSException {
+        for (MessageConsumer consumer : consumers) {
+            Message message = consumer.receiveNoWait();
+            if (message != null) {
+                return message;
+            }
+        }
+        return consumers.get(0).receive(IDLE_RECEIVE_TIMEOUT_MILLIS);
+    }
+
+    private void dispatch(Message message) {
+        inFlight.incrementAndGet();
+        Span span = tracer.nextSpan().name("operation-request").start();
+        try (Tracer.SpanInScope ignored = tracer.withSpan(span)) {
+            JMSRequest request = (JMSRequest) messageConverter.fromMessage(message);
+            operationListener.receiveOperationRequest(request, span.context().traceId(),
+                    OperationMessageConverter.codecOf(message))
+                    .whenComplete((v, t) -> handled(message, span));
+        } catch (Exception e) {
+            // never going to be handled, acknowledge so it is not redelivered over and over
+            log.error("Unable to handle operation request {}, dropping it.", message, e);
+            handled(message, span);
+        }
+    }
+
+    private void handled(Message message, Span span) {
+        span.end();
+        executionService.releaseCapacity();
+        handled.add(message);
+        inFlight.decrementAndGet();
+    }
+
+    private void acknowledgeHandled() {
+        Message message;
+        while ((message = handled.poll()) != null) {
+            try {
+                message.acknowledge();
+            } catch (JMSException e) {
+                log.warn("Unable to acknowledge operation request {}.", message, e);
+            }
+        }
+    }
+
+    private List<MessageConsumer> connect() throws JMSException {
+        connection = connectionFactory.createConnection();
+        session = connection.createSession(false, ActiveMQJMSConstants.INDIVIDUAL_ACKNOWLEDGE);
+        List<MessageConsumer> consumers = new ArrayList<>();
+        for (OperationQueue queue : OperationQueue.values()) {
+            consumers.add(session.createConsumer(session.createQueue(queue.getDestination())));
+        }
+        connection.start();
+        log.info("Consuming operation requests from {}.",
+                Arrays.stream(OperationQueue.values()).map(OperationQueue::getDestination).toList());
+        return consumers;
+    }
+
+    private void disconnect() {
+        // the connection may be shared by a caching connection factory, close the session explicitly
+        if (session != null) {
+            try {
+                session.close();
+            } catch (JMSException e) {
+                log.debug("Unable to close session.", e);
+            }
+            session = null;
+        }
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (JMSException e) {
+                log.debug("Unable to close connection.", e);
+            }
+            connection = null;
+        }
+    }
+
+    private void sleep() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            running = false;
+        }
+    }
+}
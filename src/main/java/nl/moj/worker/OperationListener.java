@@ -1,11 +1,13 @@
 package nl.moj.worker;
 
 import java.time.Instant;
-import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
-import org.springframework.cloud.sleuth.Tracer;
-import org.springframework.cloud.sleuth.annotation.NewSpan;
-import org.springframework.jms.annotation.JmsListener;
 import org.springframework.jms.core.JmsTemplate;
 import org.springframework.stereotype.Service;
 
@@ -14,136 +16,152 @@ import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.messages.JMSCompileRequest;
 import nl.moj.common.messages.JMSCompileResponse;
 import nl.moj.common.messages.JMSRequest;
+import nl.moj.common.messages.JMSResponse;
 import nl.moj.common.messages.JMSSubmitRequest;
 import nl.moj.common.messages.JMSSubmitResponse;
 import nl.moj.common.messages.JMSTestRequest;
 import nl.moj.common.messages.JMSTestResponse;
+import nl.moj.common.messages.MessageCodec;
+import nl.moj.common.messages.OperationMessageConverter;
 import nl.moj.worker.java.JavaService;
 
+/**
+ * Handles the operation requests received by the {@link OperationConsumer}. Handling does not block, the returned
+ * futures complete once the response has been sent and the work for it has stopped.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class OperationListener {
-    private static final String REQUEST_DESTINATION = "operation_request";
     private static final String RESPONSE_DESTINATION = "operation_response";
 
     private final JmsTemplate jmsTemplate;
+    private final OperationMessageConverter messageConverter;
     private final JavaService javaService;
     private final WorkerService workerService;
+    private final CancellationService cancellationService;
 
-    private final Tracer tracer;
-
-    @JmsListener(destination = REQUEST_DESTINATION)
-    @NewSpan
-    public void receiveOperationRequest(JMSRequest request) {
+    public CompletableFuture<Void> receiveOperationRequest(JMSRequest request, String traceId, MessageCodec codec) {
         log.info("On-Thread: {}-{}", workerService.getWorkerIdentification(), Thread.currentThread().getName());
         if (request instanceof JMSCompileRequest r) {
-            receiveCompileRequest(r);
+            return receiveCompileRequest(r, traceId, codec);
         } else if (request instanceof JMSTestRequest r) {
-            receiveTestRequest(r);
+            return receiveTestRequest(r, traceId, codec);
         } else if (request instanceof JMSSubmitRequest r) {
-            receiveSubmitRequest(r);
+            return receiveSubmitRequest(r, traceId, codec);
         } else {
             log.warn("Unable to receive operation request of type {}, ignoring.", request.getClass().getName());
+            return CompletableFuture.completedFuture(null);
         }
     }
 
-    private void receiveCompileRequest(JMSCompileRequest compileRequest) {
-        String traceId = traceId();
-        try {
-            log.info("Received compile attempt {}", compileRequest.getAttempt());
-            javaService.compile(compileRequest, traceId).thenApply(cr -> {
-                log.info("Compile attempt {} finished with {}", cr.getAttempt(), cr);
-                try {
-                    jmsTemplate.convertAndSend(RESPONSE_DESTINATION, cr);
-                } catch (Throwable t) {
-                    log.error("FAIL", t);
-                }
-                return cr;
-            }).join();
-        } catch (Exception e) {
-            log.error("Compile failed for attempt {}", compileRequest.getAttempt(), e);
-            try {
-                jmsTemplate.convertAndSend(RESPONSE_DESTINATION, JMSCompileResponse.builder()
-                        .attempt(compileRequest.getAttempt())
-                        .ended(Instant.now())
-                        .started(Instant.now())
-                        .aborted(true)
-                        .reason(e.getMessage())
-                        .success(false)
-                        .timeout(false)
-                        .worker(workerService.getWorkerIdentification())
-                        .traceId(traceId)
-                        .build());
-            } catch (Throwable t) {
-                log.error("FAIL", t);
-            }
-        }
+    private CompletableFuture<Void> receiveCompileRequest(JMSCompileRequest compileRequest, String traceId,
+            MessageCodec codec) {
+        log.info("Received compile attempt {}", compileRequest.getAttempt());
+        return handle(compileRequest.getAttempt(), codec, () -> javaService.compile(compileRequest, traceId), cr -> {
+            log.info("Compile attempt {} finished with {}", cr.getAttempt(), cr);
+            return cr;
+        }, e -> {
+            logFailure("Compile", compileRequest.getAttempt(), e);
+            return JMSCompileResponse.builder()
+                    .attempt(compileRequest.getAttempt())
+                    .ended(Instant.now())
+                    .started(Instant.now())
+                    .aborted(true)
+                    .reason(e.getMessage())
+                    .success(false)
+                    .timeout(false)
+                    .worker(workerService.getWorkerIdentification())
+                    .traceId(traceId)
+                    .build();
+        });
     }
 
-    private void receiveTestRequest(JMSTestRequest testRequest) {
-        String traceId = traceId();
-        try {
-            log.info("Received test attempt {}", testRequest.getAttempt());
-            javaService.test(testRequest, traceId).thenApply(tr -> {
-                log.info("Test attempt {} finished with {}", tr.getAttempt(), tr);
-                try {
-                    jmsTemplate.convertAndSend(RESPONSE_DESTINATION, tr);
-                } catch (Throwable t) {
-                    log.error("FAIL", t);
-                }
-                return tr;
-            }).join();
-        } catch (Exception e) {
-            log.error("Test failed for attempt {}", testRequest.getAttempt(), e);
-            try {
-                jmsTemplate.convertAndSend(RESPONSE_DESTINATION, JMSTestResponse.builder()
-                        .attempt(testRequest.getAttempt())
-                        .ended(Instant.now())
-                        .started(Instant.now())
-                        .aborted(true)
-                        .reason(e.getMessage())
-                        .traceId(traceId)
-                        .worker(workerService.getWorkerIdentification())
-                        .build());
-            } catch (Throwable t) {
-                log.error("FAIL", t);
-            }
+    private CompletableFuture<Void> receiveTestRequest(JMSTestRequest testRequest, String traceId,
+            MessageCodec codec) {
+        log.info("Received test attempt {}", testRequest.getAttempt());
+        return handle(testRequest.getAttempt(), codec,
+                () -> javaService.test(testRequest, traceId, r -> send(r, codec)), tr -> {
+                    log.info("Test attempt {} finished with {}", tr.getAttempt(), tr);
+                    return tr;
+                }, e -> {
+                    logFailure("Test", testRequest.getAttempt(), e);
+                    return JMSTestResponse.builder()
+                            .attempt(testRequest.getAttempt())
+                            .ended(Instant.now())
+                            .started(Instant.now())
+                            .aborted(true)
+                            .reason(e.getMessage())
+                            .traceId(traceId)
+                            .worker(workerService.getWorkerIdentification())
+                            .build();
+                });
+    }
+
+    private CompletableFuture<Void> receiveSubmitRequest(JMSSubmitRequest submitRequest, String traceId,
+            MessageCodec codec) {
+        log.info("Received submit attempt {}", submitRequest.getAttempt());
+        return handle(submitRequest.getAttempt(), codec, () -> javaService.submit(submitRequest, traceId), tr -> {
+            log.info("Submit attempt {} finished with {}", tr.getAttempt(), tr);
+            return tr;
+        }, e -> {
+            logFailure("Submit", submitRequest.getAttempt(), e);
+            return JMSSubmitResponse.builder()
+                    .attempt(submitRequest.getAttempt())
+                    .ended(Instant.now())
+                    .started(Instant.now())
+                    .aborted(true)
+                    .reason(e.getMessage())
+                    .traceId(traceId)
+                    .worker(workerService.getWorkerIdentification())
+                    .build();
+        });
+    }
+
+    private void logFailure(String operation, UUID attempt, Throwable e) {
+        if (e instanceof CancellationException) {
+            log.info("{} cancelled for attempt {}: {}", operation, attempt, e.getMessage());
+        } else {
+            log.error("{} failed for attempt {}", operation, attempt, e);
         }
     }
 
-    private void receiveSubmitRequest(JMSSubmitRequest submitRequest) {
-        String traceId = traceId();
+    private <T extends JMSResponse> CompletableFuture<Void> handle(UUID attempt, MessageCodec codec,
+            Supplier<CompletableFuture<T>> operation, Function<T, JMSResponse> finished,
+            Function<Throwable, JMSResponse> failed) {
+        CompletableFuture<T> result;
         try {
-            log.info("Received submit attempt {}", submitRequest.getAttempt());
-            javaService.submit(submitRequest, traceId).thenApply(tr -> {
-                log.info("Submit attempt {} finished with {}", tr.getAttempt(), tr);
-                try {
-                    jmsTemplate.convertAndSend(RESPONSE_DESTINATION, tr);
-                } catch (Throwable t) {
-                    log.error("FAIL", t);
-                }
-                return tr;
-            }).join();
+            // skip cancelled attempts before doing any work for them
+            cancellationService.check(attempt);
+            result = operation.get();
         } catch (Exception e) {
-            log.error("Submit failed for attempt {}", submitRequest.getAttempt(), e);
-            try {
-                jmsTemplate.convertAndSend(RESPONSE_DESTINATION, JMSSubmitResponse.builder()
-                        .attempt(submitRequest.getAttempt())
-                        .ended(Instant.now())
-                        .started(Instant.now())
-                        .aborted(true)
-                        .reason(e.getMessage())
-                        .traceId(traceId)
-                        .worker(workerService.getWorkerIdentification())
-                        .build());
-            } catch (Throwable t) {
-                log.error("FAIL", t);
-            }
+            result = CompletableFuture.failedFuture(e);
         }
+        // answer a cancellation right away, the interrupted work keeps its slot until it has wound down
+        CompletableFuture<T> outcome = new CompletableFuture<>();
+        result.whenComplete((r, t) -> {
+            if (t != null) {
+                outcome.completeExceptionally(t);
+            } else {
+                outcome.complete(r);
+            }
+        });
+        cancellationService.whenCancelled(attempt)
+                .thenAccept(reason -> outcome.completeExceptionally(new CancellationException(reason)));
+        CompletableFuture<Void> sent = outcome.<JMSResponse> thenApply(finished)
+                .exceptionally(t -> failed.apply(t instanceof CompletionException && t.getCause() != null
+                        ? t.getCause()
+                        : t))
+                .thenAccept(r -> send(r, codec))
+                .whenComplete((v, t) -> cancellationService.done(attempt));
+        return CompletableFuture.allOf(sent, result.handle((r, t) -> null));
     }
 
-    private String traceId() {
-        return Objects.requireNonNull(tracer.currentSpan()).context().traceId();
+    private void send(JMSResponse response, MessageCodec codec) {
+        try {
+            jmsTemplate.send(RESPONSE_DESTINATION, messageConverter.creator(response, codec));
+        } catch (Throwable t) {
+            log.error("FAIL", t);
+        }
     }
 }
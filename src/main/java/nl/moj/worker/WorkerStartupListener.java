@@ -25,6 +25,9 @@ import org.springframework.stereotype.Component;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.bootstrap.BootstrapService;
+import nl.moj.worker.java.ClassDataSharingService;
+import nl.moj.worker.java.compile.CompileRunnerService;
+import nl.moj.worker.java.test.pool.TestRunnerPool;
 
 @Component
 @AllArgsConstructor
@@ -32,9 +35,15 @@ import nl.moj.common.bootstrap.BootstrapService;
 public class WorkerStartupListener implements ApplicationListener<ContextRefreshedEvent> {
 
     private final BootstrapService bootstrapService;
+    private final CompileRunnerService compileRunnerService;
+    private final TestRunnerPool testRunnerPool;
+    private final ClassDataSharingService classDataSharingService;
 
     public void onApplicationEvent(ContextRefreshedEvent event) {
         bootstrap();
+        classDataSharingService.warmUp();
+        compileRunnerService.warmUp();
+        testRunnerPool.warmUp();
     }
 
     private void bootstrap() {
@@ -16,6 +16,8 @@ public class WebSecurityConfig {
 
     @Bean //(name = BeanIds.SPRING_SECURITY_FILTER_CHAIN)
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
+        // workers have no users, toolchains are listed and rescanned on the controller, health reports if a JDK is
+        // available
         http.authorizeRequests(a -> a
                 .antMatchers("/actuator/health")
                 .permitAll()
@@ -1,17 +1,31 @@
 package nl.moj.worker.controller;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.HexFormat;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
-import org.springframework.util.StreamUtils;
 import org.springframework.web.client.RestTemplate;
 
 import lombok.RequiredArgsConstructor;
@@ -19,13 +33,24 @@ import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
 import nl.moj.common.assignment.service.AssignmentDescriptorService;
 import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.storage.StorageService;
 import nl.moj.common.util.ZipUtils;
 
+/**
+ * Downloads the content of assignments from the controller. Every version of an assignment is extracted once in the
+ * cache folder, keyed by the ETag of the controller, so it survives restarts. Concurrent requests for an assignment
+ * share a single download. A cached assignment is used right away and revalidated with a conditional request in the
+ * background once it is older than the configured revalidation period.
+ */
 @RequiredArgsConstructor
 @Slf4j
 public class RemoteControllerClient implements ControllerClient {
 
-    private final Map<UUID, AssignmentDescriptor> cachedDescriptors = new ConcurrentHashMap<>();
+    private static final String CURRENT = "current";
+    private static final Pattern VERSION = Pattern.compile("[0-9a-zA-Z_-]{1,128}");
+
+    private final Map<UUID, Bundle> bundles = new ConcurrentHashMap<>();
+    private final Map<UUID, CompletableFuture<Bundle>> loading = new ConcurrentHashMap<>();
 
     private final MojServerProperties mojServerProperties;
 
@@ -33,44 +58,208 @@ public class RemoteControllerClient implements ControllerClient {
 
     private final RestTemplate restTemplate;
 
+    private final StorageService storageService;
+
     public AssignmentDescriptor getAssignmentDescriptor(UUID assignmentUuid) throws IOException {
-        if (!cachedDescriptors.containsKey(assignmentUuid)) {
-            // download zip
-            Path zipFile = fetchAssignmentZip(assignmentUuid);
-            if (zipFile == null) {
-                throw new IOException("Assignment " + assignmentUuid + " content not found.");
+        Bundle bundle = bundles.get(assignmentUuid);
+        if (bundle == null) {
+            bundle = await(load(assignmentUuid, false));
+        } else if (bundle.isStale(getRevalidateAfter())) {
+            CompletableFuture.runAsync(() -> load(assignmentUuid, true));
+        }
+        return bundle.descriptor();
+    }
+
+    // only one load per assignment at a time, others wait for it
+    private CompletableFuture<Bundle> load(UUID uuid, boolean revalidate) {
+        CompletableFuture<Bundle> result = new CompletableFuture<>();
+        CompletableFuture<Bundle> running = loading.putIfAbsent(uuid, result);
+        if (running != null) {
+            return running;
+        }
+        try {
+            Bundle bundle = bundles.get(uuid);
+            if (bundle == null) {
+                bundle = restoreOrDownload(uuid);
+            } else if (revalidate && bundle.isStale(getRevalidateAfter())) {
+                bundle = download(uuid, bundle);
             }
+            bundles.put(uuid, bundle);
+            result.complete(bundle);
+        } catch (Exception e) {
+            log.warn("Unable to load assignment {}.", uuid, e);
+            // keep using what we have, try again after the revalidation period
+            bundles.computeIfPresent(uuid, (k, b) -> b.validated());
+            result.completeExceptionally(e);
+        } finally {
+            loading.remove(uuid, result);
+        }
+        return result;
+    }
+
+    private Bundle restoreOrDownload(UUID uuid) throws IOException {
+        Path current = getCacheFolder(uuid).resolve(CURRENT);
+        if (Files.exists(current)) {
+            String version = Files.readString(current, StandardCharsets.UTF_8).trim();
+            Path directory = getCacheFolder(uuid).resolve(version);
+            AssignmentDescriptor descriptor = VERSION.matcher(version).matches() && Files.isDirectory(directory)
+                    ? assignmentDescriptorService.findInFolder(directory)
+                    : null;
+            if (descriptor != null) {
+                log.info("Using cached version {} of assignment {}.", version, uuid);
+                // never validated by this worker, check for a newer version on the next use
+                return new Bundle(version, descriptor, Instant.EPOCH);
+            }
+        }
+        return download(uuid, null);
+    }
 
-            // extract to temp directory
-            Path assignmentDir = Files.createTempDirectory("assignment");
-            ZipUtils.unzip(zipFile, assignmentDir);
+    private Bundle download(UUID uuid, Bundle cached) throws IOException {
+        Path folder = getCacheFolder(uuid);
+        Files.createDirectories(folder);
+        Path zip = Files.createTempFile(folder, "download", ".zip");
+        try {
+            Download download = restTemplate.execute(resolveEndpoint(uuid), HttpMethod.GET, request -> {
+                if (cached != null) {
+                    request.getHeaders().setIfNoneMatch(quote(cached.version()));
+                }
+            }, response -> {
+                if (response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                    return null;
+                }
+                if (response.getStatusCode() != HttpStatus.OK) {
+                    throw new IOException("Assignment " + uuid + " content not found.");
+                }
+                return new Download(response.getHeaders().getETag(), copy(response.getBody(), zip));
+            });
 
-            // read descriptor
-            AssignmentDescriptor descriptor = assignmentDescriptorService.findInFolder(assignmentDir);
+            if (download == null) {
+                log.debug("Assignment {} version {} is up to date.", uuid, cached.version());
+                return cached.validated();
+            }
+            String version = version(download);
+            Path directory = folder.resolve(version);
+            if (!Files.isDirectory(directory)) {
+                Path extracted = Files.createTempDirectory(folder, "extract");
+                try {
+                    ZipUtils.unzip(zip, extracted);
+                    Files.move(extracted, directory, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    delete(extracted);
+                }
+            }
+            AssignmentDescriptor descriptor = assignmentDescriptorService.findInFolder(directory);
             if (descriptor == null) {
-                throw new IOException("Assignment " + assignmentUuid + " descriptor not found.");
+                throw new IOException("Assignment " + uuid + " descriptor not found.");
             }
+            Path current = Files.createTempFile(folder, CURRENT, ".tmp");
+            Files.writeString(current, version, StandardCharsets.UTF_8);
+            Files.move(current, folder.resolve(CURRENT), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            log.info("Downloaded version {} of assignment {}.", version, uuid);
 
-            // add to map
-            cachedDescriptors.put(assignmentUuid, descriptor);
+            cleanup(folder, version, cached != null ? cached.version() : null);
+            return new Bundle(version, descriptor, Instant.now());
+        } finally {
+            Files.deleteIfExists(zip);
+        }
+    }
 
+    // running attempts may still use the previous version, only remove the ones before it
+    private void cleanup(Path folder, String version, String previous) throws IOException {
+        try (Stream<Path> files = Files.list(folder)) {
+            files.filter(Files::isDirectory)
+                    .filter(d -> !d.getFileName().toString().equals(version)
+                            && !d.getFileName().toString().equals(previous))
+                    .forEach(d -> {
+                        log.info("Removing superseded version {} of assignment {}.", d.getFileName(),
+                                folder.getFileName());
+                        delete(d);
+                    });
         }
-        return cachedDescriptors.get(assignmentUuid);
     }
 
-    private Path fetchAssignmentZip(UUID uuid) {
-        return restTemplate.execute(resolveEndpoint(uuid), HttpMethod.GET, null, clientHttpResponse -> {
-            if (clientHttpResponse.getStatusCode() == HttpStatus.OK) {
-                Path dst = Files.createTempFile("assignment", "zip");
-                StreamUtils.copy(clientHttpResponse.getBody(), Files.newOutputStream(dst, StandardOpenOption.WRITE));
-                return dst;
+    // returns the hash of the content
+    private static String copy(InputStream body, Path zip) throws IOException {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(body, digest); OutputStream out = Files.newOutputStream(zip)) {
+            in.transferTo(out);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // controllers that do not send an ETag are versioned by the hash of the content
+    private static String version(Download download) {
+        String etag = download.etag();
+        if (etag != null) {
+            etag = etag.replaceFirst("^W/", "").replace("\"", "");
+            if (VERSION.matcher(etag).matches()) {
+                return etag;
             }
-            return null;
-        });
+        }
+        return download.sha256();
+    }
+
+    private static String quote(String version) {
+        return "\"" + version + "\"";
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            if (e.getCause() instanceof UncheckedIOException io) {
+                throw io.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private static void delete(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            log.warn("Unable to delete {}.", path, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Duration getRevalidateAfter() {
+        return mojServerProperties.getWorker().getAssignmentCache().getRevalidateAfter();
+    }
+
+    private Path getCacheFolder(UUID uuid) {
+        return storageService.getCacheFolder().resolve("assignments").resolve(uuid.toString());
     }
 
     private URI resolveEndpoint(UUID uuid) {
         return mojServerProperties.getControllerEndpoint().resolve("/api/assignment/" + uuid + "/content");
     }
 
+    private record Bundle(String version, AssignmentDescriptor descriptor, Instant validatedAt) {
+
+        boolean isStale(Duration revalidateAfter) {
+            return validatedAt.plus(revalidateAfter).isBefore(Instant.now());
+        }
+
+        Bundle validated() {
+            return new Bundle(version, descriptor, Instant.now());
+        }
+    }
+
+    private record Download(String etag, String sha256) {
+    }
 }
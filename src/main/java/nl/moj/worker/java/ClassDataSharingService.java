@@ -0,0 +1,308 @@
+package nl.moj.worker.java;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.stereotype.Service;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.config.properties.Languages;
+import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.storage.StorageService;
+import nl.moj.common.toolchain.Toolchain;
+import nl.moj.common.toolchain.ToolchainService;
+import nl.moj.server.util.NamedThreadFactory;
+import nl.moj.worker.java.test.TestRunnerJar;
+import nl.moj.worker.java.test.TestRunnerService;
+import nl.moj.worker.java.test.runner.WarmupTest;
+
+/**
+ * Generates dynamic class data sharing (AppCDS) archives for the JVMs forked to compile and test, so these do not
+ * have to load and verify the JDK, JUnit and library classes from scratch. Archives are generated per JDK by
+ * running javac and a representative test once, and are regenerated when the libraries change. Until an archive is
+ * available JVMs are started without one.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ClassDataSharingService {
+
+    private static final int MINIMUM_JAVA_VERSION = 13;
+    private static final long GENERATE_TIMEOUT_SECONDS = 120;
+    private static final String CDS = "cds";
+    private static final String WARMUP_SOURCE = """
+            import java.util.*;
+            import java.util.function.*;
+            import java.util.stream.*;
+
+            public class Warmup {
+
+                interface Shape {
+                    double area();
+                }
+
+                static class Square implements Shape {
+                    private final double side;
+
+                    Square(double side) {
+                        this.side = side;
+                    }
+
+                    @Override
+                    public double area() {
+                        return side * side;
+                    }
+                }
+
+                public static void main(String[] args) {
+                    List<Shape> shapes = new ArrayList<>();
+                    for (int i = 0; i < 10; i++) {
+                        shapes.add(new Square(i));
+                    }
+                    Map<Boolean, List<Double>> areas = shapes.stream()
+                            .map(Shape::area)
+                            .collect(Collectors.partitioningBy(a -> a > 10));
+                    Function<String, Integer> length = String::length;
+                    System.out.println(areas + " " + length.apply(String.format("%s", args.length)));
+                }
+            }
+            """;
+
+    private final MojServerProperties mojServerProperties;
+    private final StorageService storageService;
+    private final ClasspathService classpathService;
+    private final TestRunnerJar testRunnerJar;
+    private final ToolchainService toolchainService;
+
+    private final ExecutorService generator = Executors.newSingleThreadExecutor(new NamedThreadFactory(CDS));
+    private final Set<Path> generating = ConcurrentHashMap.newKeySet();
+
+    @PreDestroy
+    public void shutdown() {
+        generator.shutdownNow();
+    }
+
+    /**
+     * Generates the archives for all available JDKs in the background.
+     */
+    public void warmUp() {
+        if (!isEnabled()) {
+            return;
+        }
+        toolchainService.getToolchains().stream()
+                .filter(Toolchain::isAvailable)
+                .map(Toolchain::toJavaVersion)
+                .filter(jv -> jv.getVersion() >= MINIMUM_JAVA_VERSION)
+                .forEach(jv -> {
+                    compilerOptions(jv);
+                    testOptions(jv, jv.getVersion() > 11);
+                });
+    }
+
+    /**
+     * The classpath for test JVMs. The libraries and the test runner come first and are the same for all tests, so
+     * they can be covered by the archive.
+     */
+    public String testClasspath(List<Path> paths) throws IOException {
+        List<Path> classpath = new ArrayList<>();
+        classpath.add(testRunnerJar.resolve());
+        classpath.addAll(paths);
+        return classpathService.resolveClasspathAfterLibraries(classpath);
+    }
+
+    /**
+     * @return the options for a test JVM to use the archive, or none if it is not available (yet).
+     */
+    public List<String> testOptions(Languages.JavaVersion javaVersion, boolean previewEnabled) {
+        if (!isEnabled() || javaVersion.getVersion() < MINIMUM_JAVA_VERSION) {
+            return List.of();
+        }
+        try {
+            List<Path> prefix = classpathService.resolveLibraries();
+            prefix.add(testRunnerJar.resolve());
+            String name = "test-" + javaVersion.getVersion() + (previewEnabled ? "-preview" : "");
+            Path archive = resolveArchive(name, javaVersion.getRuntime(), prefix);
+            return useOrGenerate(archive, "", () -> generateTestArchive(archive, javaVersion, previewEnabled));
+        } catch (IOException e) {
+            log.warn("Unable to resolve class data sharing archive.", e);
+            return List.of();
+        }
+    }
+
+    /**
+     * @return the options for a forked javac to use the archive, or none if it is not available (yet).
+     */
+    public List<String> compilerOptions(Languages.JavaVersion javaVersion) {
+        if (!isEnabled() || javaVersion.getVersion() < MINIMUM_JAVA_VERSION) {
+            return List.of();
+        }
+        try {
+            Path archive = resolveArchive("javac-" + javaVersion.getVersion(), javaVersion.getCompiler(), List.of());
+            return useOrGenerate(archive, "-J", () -> generateCompilerArchive(archive, javaVersion));
+        } catch (IOException e) {
+            log.warn("Unable to resolve class data sharing archive.", e);
+            return List.of();
+        }
+    }
+
+    private List<String> useOrGenerate(Path archive, String prefix, Generator task) {
+        if (Files.exists(archive)) {
+            // a mismatching archive is silently ignored, warnings would end up in the output of the team
+            return List.of(prefix + "-XX:SharedArchiveFile=" + archive.toAbsolutePath(), prefix + "-Xlog:cds=off",
+                    prefix + "-Xlog:cds+dynamic=off");
+        }
+        if (generating.add(archive)) {
+            generator.execute(() -> {
+                try {
+                    task.generate();
+                } catch (Exception e) {
+                    log.warn("Unable to generate class data sharing archive {}.", archive.getFileName(), e);
+                } finally {
+                    generating.remove(archive);
+                }
+            });
+        }
+        return List.of();
+    }
+
+    private void generateTestArchive(Path archive, Languages.JavaVersion javaVersion, boolean previewEnabled)
+            throws Exception {
+        Path policy = storageService.getLibsFolder().resolve(TestRunnerService.SECURITY_POLICY_FOR_UNIT_TESTS);
+        List<String> cmd = new ArrayList<>();
+        cmd.add(javaVersion.getRuntime().toString());
+        if (previewEnabled) {
+            cmd.add("--enable-preview");
+        }
+        cmd.addAll(dumpOptions(archive, ""));
+        if (Files.exists(policy)) {
+            cmd.add("-Djava.security.manager");
+            cmd.add("-Djava.security.policy=" + policy.toAbsolutePath());
+        }
+        cmd.add("-cp");
+        cmd.add(testClasspath(List.of()));
+        cmd.add("org.junit.runner.JUnitCore");
+        cmd.add(WarmupTest.class.getName());
+        generate(archive, cmd, storageService.getLibsFolder());
+    }
+
+    private void generateCompilerArchive(Path archive, Languages.JavaVersion javaVersion) throws Exception {
+        Path tmp = Files.createTempDirectory(CDS);
+        try {
+            Files.writeString(tmp.resolve("Warmup.java"), WARMUP_SOURCE);
+            List<String> cmd = new ArrayList<>();
+            cmd.add(javaVersion.getCompiler().toString());
+            cmd.addAll(dumpOptions(archive, "-J"));
+            cmd.add("-Xlint:all");
+            cmd.add("-d");
+            cmd.add(tmp.toAbsolutePath().toString());
+            cmd.add(tmp.resolve("Warmup.java").toAbsolutePath().toString());
+            generate(archive, cmd, tmp);
+        } finally {
+            try (Stream<Path> walk = Files.walk(tmp)) {
+                walk.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    private List<String> dumpOptions(Path archive, String prefix) {
+        return List.of(prefix + "-XX:ArchiveClassesAtExit=" + tmpArchive(archive).toAbsolutePath(),
+                prefix + "-Xlog:cds=off", prefix + "-Xlog:cds+dynamic=off");
+    }
+
+    private void generate(Path archive, List<String> cmd, Path directory) throws Exception {
+        long start = System.nanoTime();
+        Path tmp = tmpArchive(archive);
+        Files.deleteIfExists(tmp);
+        ProcessResult result = new ProcessExecutor(cmd)
+                .directory(directory.toFile())
+                .timeout(GENERATE_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readOutput(true)
+                .destroyOnExit()
+                .execute();
+        if (result.getExitValue() != 0 || !Files.exists(tmp)) {
+            Files.deleteIfExists(tmp);
+            log.warn("Generating class data sharing archive {} failed: {}", archive.getFileName(),
+                    result.outputUTF8());
+            return;
+        }
+        Files.move(tmp, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        removeOutdated(archive);
+        log.info("Generated class data sharing archive {} in {}ms.", archive.getFileName(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Removes archives with the same name for earlier versions of the libraries.
+     */
+    private void removeOutdated(Path archive) throws IOException {
+        String fileName = archive.getFileName().toString();
+        String name = fileName.substring(0, fileName.lastIndexOf('-') + 1);
+        try (Stream<Path> list = Files.list(archive.getParent())) {
+            for (Path p : list.toList()) {
+                String other = p.getFileName().toString();
+                if (other.startsWith(name) && other.endsWith(".jsa") && !other.equals(fileName)
+                        && other.substring(name.length()).indexOf('-') < 0) {
+                    Files.deleteIfExists(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resolves the archive for the executable and classpath. The archive name contains a fingerprint of both, a
+     * change to any of them results in a new archive.
+     */
+    private Path resolveArchive(String name, Path executable, List<Path> classpath) throws IOException {
+        MessageDigest digest = sha256();
+        for (Path p : Stream.concat(Stream.of(executable), classpath.stream()).toList()) {
+            String entry = p.toAbsolutePath() + ":" + (Files.exists(p) ? Files.size(p) + ":"
+                    + Files.getLastModifiedTime(p).toMillis() : "missing");
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        String fingerprint = HexFormat.of().formatHex(digest.digest()).substring(0, 16);
+        Path directory = storageService.getCacheFolder().resolve(CDS);
+        Files.createDirectories(directory);
+        return directory.resolve(name + "-" + fingerprint + ".jsa");
+    }
+
+    private boolean isEnabled() {
+        return mojServerProperties.getWorker().getClassDataSharing().isEnabled();
+    }
+
+    private static Path tmpArchive(Path archive) {
+        return archive.resolveSibling(archive.getFileName() + ".tmp");
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Generator {
+        void generate() throws Exception;
+    }
+}
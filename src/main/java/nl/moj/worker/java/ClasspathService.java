@@ -1,11 +1,18 @@
 package nl.moj.worker.java;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
@@ -21,15 +28,74 @@ public class ClasspathService {
 
     private final StorageService storageService;
 
+    // content hashes of the libraries, by path, size and modification time
+    private final Map<String, String> libraryHashes = new ConcurrentHashMap<>();
+
     public String resolveClasspath(Collection<Path> paths) {
         final List<Path> classPath = new ArrayList<>();
         if (paths != null && !paths.isEmpty()) {
             classPath.addAll(paths);
         }
-        classPath.add(resolveLibrary("junit-4.12.jar"));
-        classPath.add(resolveLibrary("hamcrest-all-1.3.jar"));
-        classPath.add(resolveLibrary("asciiart-core-1.1.0.jar"));
+        classPath.addAll(resolveLibraries());
+        return toClasspath(classPath);
+    }
+
+    /**
+     * Resolves a classpath with the libraries first, followed by the given paths.
+     */
+    public String resolveClasspathAfterLibraries(Collection<Path> paths) {
+        final List<Path> classPath = resolveLibraries();
+        if (paths != null && !paths.isEmpty()) {
+            classPath.addAll(paths);
+        }
+        return toClasspath(classPath);
+    }
+
+    public List<Path> resolveLibraries() {
+        final List<Path> libraries = new ArrayList<>();
+        libraries.add(resolveLibrary("junit-4.12.jar"));
+        libraries.add(resolveLibrary("hamcrest-all-1.3.jar"));
+        libraries.add(resolveLibrary("asciiart-core-1.1.0.jar"));
+        return libraries;
+    }
+
+    /**
+     * Fingerprints the libraries by their paths and contents, a changed library results in a different fingerprint.
+     * The content of a library is only hashed again when its size or modification time changes.
+     */
+    public String fingerprintLibraries() throws IOException {
+        MessageDigest digest = sha256();
+        for (Path library : resolveLibraries()) {
+            String entry = library.toAbsolutePath() + ":" + hash(library);
+            digest.update(entry.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private String hash(Path library) throws IOException {
+        if (!Files.exists(library)) {
+            return "missing";
+        }
+        String version = library.toAbsolutePath() + ":" + Files.size(library) + ":"
+                + Files.getLastModifiedTime(library).toMillis();
+        String hash = libraryHashes.get(version);
+        if (hash == null) {
+            hash = HexFormat.of().formatHex(sha256().digest(Files.readAllBytes(library)));
+            libraryHashes.put(version, hash);
+        }
+        return hash;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
+    private String toClasspath(List<Path> classPath) {
         for (Path file : classPath) {
             if (Files.exists(file)) {
                 log.trace("found: {}", file.toAbsolutePath());
@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
 
 import org.springframework.stereotype.Service;
 
@@ -13,12 +15,14 @@ import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
 import nl.moj.common.messages.*;
 import nl.moj.server.util.CompletableFutures;
+import nl.moj.worker.CancellationService;
 import nl.moj.worker.ExecutionService;
 import nl.moj.worker.WorkerService;
 import nl.moj.worker.controller.ControllerClient;
 import nl.moj.worker.java.compile.CompileOutput;
 import nl.moj.worker.java.compile.CompileRunnerService;
 import nl.moj.worker.java.test.TestCaseOutput;
+import nl.moj.worker.java.test.TestMethodOutput;
 import nl.moj.worker.java.test.TestOutput;
 import nl.moj.worker.java.test.TestRunnerService;
 import nl.moj.worker.workspace.Workspace;
@@ -35,16 +39,17 @@ public class JavaService {
     private final WorkspaceService workspaceService;
     private final ExecutionService executionService;
     private final WorkerService workerService;
+    private final CancellationService cancellationService;
 
     public CompletableFuture<JMSCompileResponse> compile(JMSCompileRequest compileRequest, String traceId) {
         try {
             AssignmentDescriptor ad = controllerClient.getAssignmentDescriptor(compileRequest.getAssignment());
-            Workspace workspace = workspaceService.getWorkspace(ad, compileRequest.getSources());
-            return compile(workspace)
-                    .thenApply(co -> {
-                        closeWorkspace(workspace);
-                        return toCompileResponse(compileRequest.getAttempt(), traceId, co);
-                    });
+            Workspace workspace = workspaceService.getWorkspace(compileRequest.getAssignment(), ad,
+                    compileRequest.getSources());
+            return compile(workspace, compileRequest.getAttempt(),
+                    executionService.getExecutor(ad, compileRequest.getAttempt()))
+                    .whenComplete((co, t) -> workspaceService.close(workspace, compileRequest.getAttempt()))
+                    .thenApply(co -> toCompileResponse(compileRequest.getAttempt(), traceId, co));
 
         } catch (Exception e) {
             return CompletableFuture.completedFuture(JMSCompileResponse.builder()
@@ -59,15 +64,21 @@ public class JavaService {
         }
     }
 
-    public CompletableFuture<JMSTestResponse> test(JMSTestRequest testRequest, String traceId) {
+    /**
+     * Tests the request, partial results are handed to the given consumer as soon as the compile or a test case is
+     * done.
+     */
+    public CompletableFuture<JMSTestResponse> test(JMSTestRequest testRequest, String traceId,
+            Consumer<JMSTestProgressResponse> progress) {
         try {
             AssignmentDescriptor ad = controllerClient.getAssignmentDescriptor(testRequest.getAssignment());
-            Workspace workspace = workspaceService.getWorkspace(ad, testRequest.getSources());
-            return test(workspace, testRequest.getTests())
-                    .thenApply(to -> {
-                        closeWorkspace(workspace);
-                        return toTestResponse(testRequest.getAttempt(), traceId, to);
-                    });
+            Workspace workspace = workspaceService.getWorkspace(testRequest.getAssignment(), ad,
+                    testRequest.getSources());
+            return test(workspace, testRequest.getAttempt(), testRequest.getTests(), false,
+                    executionService.getExecutor(ad, testRequest.getAttempt()),
+                    progressListener(testRequest.getAttempt(), traceId, progress))
+                    .whenComplete((to, t) -> workspaceService.close(workspace, testRequest.getAttempt()))
+                    .thenApply(to -> toTestResponse(testRequest.getAttempt(), traceId, to));
         } catch (Exception e) {
             return CompletableFuture.completedFuture(JMSTestResponse.builder()
                     .traceId(traceId)
@@ -85,12 +96,12 @@ public class JavaService {
     public CompletableFuture<JMSSubmitResponse> submit(JMSSubmitRequest submitRequest, String traceId) {
         try {
             AssignmentDescriptor ad = controllerClient.getAssignmentDescriptor(submitRequest.getAssignment());
-            Workspace workspace = workspaceService.getWorkspace(ad, submitRequest.getSources());
-            return test(workspace, submitRequest.getTests())
-                    .thenApply(to -> {
-                        closeWorkspace(workspace);
-                        return toSubmitResponse(submitRequest.getAttempt(), traceId, to);
-                    });
+            Workspace workspace = workspaceService.getWorkspace(submitRequest.getAssignment(), ad,
+                    submitRequest.getSources());
+            return test(workspace, submitRequest.getAttempt(), submitRequest.getTests(), submitRequest.isFailFast(),
+                    executionService.getExecutor(ad, submitRequest.getAttempt()), TestProgress.NONE)
+                    .whenComplete((to, t) -> workspaceService.close(workspace, submitRequest.getAttempt()))
+                    .thenApply(to -> toSubmitResponse(submitRequest.getAttempt(), traceId, to));
         } catch (Exception e) {
             return CompletableFuture.completedFuture(JMSSubmitResponse.builder()
                     .traceId(traceId)
@@ -144,6 +155,17 @@ public class JavaService {
                 .ended(to.getDateTimeEnd())
                 .timeout(to.isTimedOut())
                 .output(concat(to.getOutput(), to.getErrorOutput()))
+                .methodResults(to.getMethodResults().stream().map(this::toTestMethodResult).toList())
+                .build();
+    }
+
+    private JMSTestMethodResult toTestMethodResult(TestMethodOutput mo) {
+        return JMSTestMethodResult.builder()
+                .name(mo.getName())
+                .status(mo.getStatus())
+                .duration(mo.getDuration())
+                .message(mo.getMessage())
+                .trace(mo.getTrace())
                 .build();
     }
 
@@ -159,24 +181,46 @@ public class JavaService {
                 .build();
     }
 
-    private static void closeWorkspace(Workspace workspace) {
-        try {
-            workspace.close();
-        } catch (Exception ex) {
-            log.error("Failed to close workspace {}, ignoring.", workspace.getRoot());
-        }
+    private TestProgress progressListener(UUID attempt, String traceId, Consumer<JMSTestProgressResponse> progress) {
+        return new TestProgress() {
+            @Override
+            public void compiled(CompileOutput co) {
+                progress.accept(JMSTestProgressResponse.builder()
+                        .attempt(attempt)
+                        .traceId(traceId)
+                        .worker(workerService.getWorkerIdentification())
+                        .compileResponse(toCompileResponse(null, traceId, co))
+                        .build());
+            }
+
+            @Override
+            public void tested(TestCaseOutput to) {
+                progress.accept(JMSTestProgressResponse.builder()
+                        .attempt(attempt)
+                        .traceId(traceId)
+                        .worker(workerService.getWorkerIdentification())
+                        .testCaseResult(toTestCaseResult(to, traceId))
+                        .build());
+            }
+        };
     }
 
-    private CompletableFuture<TestOutput> test(Workspace workspace, List<JMSTestCase> testCases) {
-        AssignmentDescriptor ad = workspace.getAssignmentDescriptor();
-        return compile(workspace)
+    private CompletableFuture<TestOutput> test(Workspace workspace, UUID attempt, List<JMSTestCase> testCases,
+            boolean failFast, Executor executor, TestProgress progress) {
+        return compile(workspace, attempt, executor)
                 .thenCompose(co -> {
+                    // a failed compile ends the attempt right away, no use reporting it separately
                     if (co.isSuccess()) {
-                        List<CompletableFuture<TestCaseOutput>> tests = new ArrayList<>();
-                        testCases.forEach(
-                                tc -> tests.add(CompletableFuture.supplyAsync(() -> testRunnerService.test(workspace, tc),
-                                        executionService.getExecutor(ad))));
-                        return CompletableFutures.allOf(tests).thenApply(tcs -> TestOutput.builder()
+                        progress.compiled(co);
+                        CompletableFuture<List<TestCaseOutput>> tests;
+                        if (failFast) {
+                            tests = testFailFast(workspace, attempt, testCases, executor, progress);
+                        } else if (testRunnerService.supportsBatch(workspace.getAssignmentDescriptor())) {
+                            tests = testBatch(workspace, attempt, testCases, executor, progress);
+                        } else {
+                            tests = testAll(workspace, attempt, testCases, executor, progress);
+                        }
+                        return tests.thenApply(tcs -> TestOutput.builder()
                                 .compileOutput(co)
                                 .testCases(tcs)
                                 .dateTimeStart(co.getDateTimeStart())
@@ -205,9 +249,61 @@ public class JavaService {
                 });
     }
 
-    private CompletableFuture<CompileOutput> compile(Workspace workspace) {
-        return CompletableFuture.supplyAsync(() -> compileRunnerService.compile(workspace),
-                executionService.getExecutor(workspace.getAssignmentDescriptor()));
+    private CompletableFuture<List<TestCaseOutput>> testAll(Workspace workspace, UUID attempt,
+            List<JMSTestCase> testCases, Executor executor, TestProgress progress) {
+        List<CompletableFuture<TestCaseOutput>> tests = new ArrayList<>();
+        testCases.forEach(tc -> tests.add(test(workspace, attempt, tc, executor, progress)));
+        return CompletableFutures.allOf(tests);
+    }
+
+    // a sequential assignment runs its tests one after the other anyway, they can share a JVM
+    private CompletableFuture<List<TestCaseOutput>> testBatch(Workspace workspace, UUID attempt,
+            List<JMSTestCase> testCases, Executor executor, TestProgress progress) {
+        return CompletableFuture.supplyAsync(() -> cancellationService.run(attempt,
+                () -> testRunnerService.testBatch(workspace, testCases, progress::tested)), executor);
+    }
+
+    // one test at a time in the given order, once a test does not succeed the rest is not worth running
+    private CompletableFuture<List<TestCaseOutput>> testFailFast(Workspace workspace, UUID attempt,
+            List<JMSTestCase> testCases, Executor executor, TestProgress progress) {
+        CompletableFuture<List<TestCaseOutput>> result = CompletableFuture.completedFuture(new ArrayList<>());
+        for (JMSTestCase tc : testCases) {
+            result = result.thenCompose(tcs -> {
+                if (!tcs.isEmpty() && !tcs.get(tcs.size() - 1).isSuccess()) {
+                    tcs.add(TestCaseOutput.builder()
+                            .aborted(true)
+                            .testCase(tc.getTestCase())
+                            .reason("Skipped, an earlier test did not succeed.")
+                            .errorOutput("Skipped, an earlier test did not succeed.")
+                            .success(false)
+                            .dateTimeStart(Instant.now())
+                            .dateTimeEnd(Instant.now())
+                            .timedOut(false)
+                            .build());
+                    return CompletableFuture.completedFuture(tcs);
+                }
+                return test(workspace, attempt, tc, executor, progress).thenApply(tco -> {
+                    tcs.add(tco);
+                    return tcs;
+                });
+            });
+        }
+        return result;
+    }
+
+    private CompletableFuture<TestCaseOutput> test(Workspace workspace, UUID attempt, JMSTestCase testCase,
+            Executor executor, TestProgress progress) {
+        return CompletableFuture.supplyAsync(() -> cancellationService.run(attempt,
+                () -> testRunnerService.test(workspace, testCase)), executor)
+                .thenApply(to -> {
+                    progress.tested(to);
+                    return to;
+                });
+    }
+
+    private CompletableFuture<CompileOutput> compile(Workspace workspace, UUID attempt, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> cancellationService.run(attempt,
+                () -> compileRunnerService.compile(workspace)), executor);
     }
 
     private String concat(String a, String b) {
@@ -223,4 +319,16 @@ public class JavaService {
         }
         return sb.toString();
     }
+
+    private interface TestProgress {
+
+        TestProgress NONE = new TestProgress() {
+        };
+
+        default void compiled(CompileOutput co) {
+        }
+
+        default void tested(TestCaseOutput to) {
+        }
+    }
 }
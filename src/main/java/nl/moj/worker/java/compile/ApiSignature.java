@@ -0,0 +1,105 @@
+package nl.moj.worker.java.compile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.FieldVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+
+/**
+ * Describes the parts of compiled classes other classes can be compiled against: the class names, their hierarchy
+ * and all non-private members, including the values of constants as these are inlined by javac. Anonymous and local
+ * classes and private and synthetic members are left out.
+ */
+final class ApiSignature {
+
+    private static final Pattern ANONYMOUS_OR_LOCAL = Pattern.compile(".*\\$\\d.*");
+
+    private ApiSignature() {
+    }
+
+    static String of(Path classes) throws IOException {
+        List<String> signature = new ArrayList<>();
+        try (Stream<Path> walk = Files.walk(classes)) {
+            for (Path file : walk.filter(p -> p.toString().endsWith(".class")).toList()) {
+                try (InputStream in = Files.newInputStream(file)) {
+                    new ClassReader(in).accept(new SignatureVisitor(signature),
+                            ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+                }
+            }
+        }
+        signature.sort(null);
+        return String.join("\n", signature);
+    }
+
+    private static boolean isVisible(int access) {
+        return (access & (Opcodes.ACC_PRIVATE | Opcodes.ACC_SYNTHETIC)) == 0;
+    }
+
+    private static class SignatureVisitor extends ClassVisitor {
+
+        private final List<String> signature;
+        private String className;
+
+        SignatureVisitor(List<String> signature) {
+            super(Opcodes.ASM9);
+            this.signature = signature;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String genericSignature, String superName,
+                String[] interfaces) {
+            if (ANONYMOUS_OR_LOCAL.matcher(name).matches()) {
+                return;
+            }
+            className = name;
+            signature.add(String.join(" ", name, Integer.toString(access), Objects.toString(genericSignature),
+                    Objects.toString(superName), String.join(",", interfaces)));
+        }
+
+        @Override
+        public void visitInnerClass(String name, String outerName, String innerName, int access) {
+            if (className != null && name.equals(className) && isVisible(access)) {
+                signature.add(String.join(" ", name, "inner", Integer.toString(access)));
+            }
+        }
+
+        @Override
+        public void visitPermittedSubclass(String permittedSubclass) {
+            if (className != null) {
+                signature.add(String.join(" ", className, "permits", permittedSubclass));
+            }
+        }
+
+        @Override
+        public FieldVisitor visitField(int access, String name, String descriptor, String genericSignature,
+                Object value) {
+            if (className != null && isVisible(access)) {
+                signature.add(String.join(" ", className, "field", Integer.toString(access), name, descriptor,
+                        Objects.toString(genericSignature), Objects.toString(value)));
+            }
+            return null;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor, String genericSignature,
+                String[] exceptions) {
+            if (className != null && isVisible(access)) {
+                signature.add(String.join(" ", className, "method", Integer.toString(access), name, descriptor,
+                        Objects.toString(genericSignature),
+                        exceptions != null ? String.join(",", exceptions) : ""));
+            }
+            return null;
+        }
+    }
+}
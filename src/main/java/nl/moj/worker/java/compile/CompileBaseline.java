@@ -0,0 +1,29 @@
+package nl.moj.worker.java.compile;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import lombok.Value;
+
+/**
+ * The compiled classes of everything in an assignment but the editable sources, teams only need to compile their
+ * editable sources against these.
+ */
+@Value
+public class CompileBaseline {
+
+    /**
+     * The classes of the non-editable sources.
+     */
+    Path classes;
+
+    /**
+     * The editable sources in the workspace.
+     */
+    List<Path> editable;
+
+    /**
+     * The {@link ApiSignature} of the classes compiled from the original editable sources.
+     */
+    String signature;
+}
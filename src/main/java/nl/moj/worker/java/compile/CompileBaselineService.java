@@ -0,0 +1,265 @@
+package nl.moj.worker.java.compile;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
+import nl.moj.common.assignment.descriptor.Sources;
+import nl.moj.common.assignment.descriptor.TestSources;
+import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.storage.StorageService;
+import nl.moj.worker.CancellationService;
+import nl.moj.worker.java.ClasspathService;
+import nl.moj.worker.util.LengthLimitedOutputCatcher;
+import nl.moj.worker.workspace.Workspace;
+
+/**
+ * Compiles the non-editable sources of an assignment once per JDK, so compiles of the team sources only need to
+ * compile the editable sources.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CompileBaselineService {
+
+    private static final String CLASSES = "classes";
+    private static final String SIGNATURE = "signature";
+    private static final String FAILED = "failed";
+    // javac failing is not always a compile error, for example when it was killed, so a failed build is retried
+    private static final Duration FAILED_EXPIRY = Duration.ofMinutes(10);
+
+    private final MojServerProperties mojServerProperties;
+    private final StorageService storageService;
+    private final ClasspathService classpathService;
+    private final CancellationService cancellationService;
+
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the baseline to compile the editable sources of the workspace against, building it if needed. There
+     * is no baseline if incremental compilation is disabled, the team replaced anything but editable sources or the
+     * original sources of the assignment do not compile. A failed or timed out build is tried again after a while.
+     */
+    public Optional<CompileBaseline> getBaseline(Workspace workspace, CompileJob job, CompileEngine engine) {
+        if (!mojServerProperties.getWorker().getCompiler().isIncremental()) {
+            return Optional.empty();
+        }
+        AssignmentDescriptor ad = workspace.getAssignmentDescriptor();
+        Sources sources = ad.getAssignmentFiles().getSources();
+        if (sources.getBase() == null || sources.getEditable().isEmpty()) {
+            return Optional.empty();
+        }
+        Set<Path> editable = Set.copyOf(sources.getEditable().stream().map(Path::normalize).toList());
+        if (!editable.containsAll(workspace.getReplacedSources())) {
+            log.debug("Non-editable sources replaced, no compile baseline for assignment {}.",
+                    workspace.getAssignment());
+            return Optional.empty();
+        }
+
+        try {
+            List<Path> originals = resolveOriginalSources(ad);
+            String key = key(workspace, job, originals);
+            Path root = getRoot().resolve(key);
+            synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+                if (!Files.exists(root.resolve(SIGNATURE)) && !isRecentlyFailed(root)) {
+                    build(root, job, engine, originals, resolveEditableOriginals(ad));
+                }
+            }
+            if (Files.exists(root.resolve(FAILED))) {
+                return Optional.empty();
+            }
+            return Optional.of(new CompileBaseline(root.resolve(CLASSES),
+                    sources.getEditable().stream().map(p -> workspace.getSourcesRoot().resolve(p)).toList(),
+                    Files.readString(root.resolve(SIGNATURE))));
+        } catch (Exception e) {
+            log.warn("Unable to build compile baseline for assignment {}, compiling all sources.",
+                    workspace.getAssignment(), e);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Links, or copies if linking is not possible, the baseline classes into the target directory.
+     */
+    public void linkInto(CompileBaseline baseline, Path target) throws IOException {
+        Path classes = baseline.getClasses();
+        try (Stream<Path> walk = Files.walk(classes)) {
+            for (Path file : walk.filter(Files::isRegularFile).toList()) {
+                Path link = target.resolve(classes.relativize(file).toString());
+                Files.createDirectories(link.getParent());
+                try {
+                    Files.createLink(link, file);
+                } catch (FileAlreadyExistsException e) {
+                    // compiled from the team sources
+                } catch (IOException | UnsupportedOperationException e) {
+                    Files.copy(file, link);
+                }
+            }
+        }
+    }
+
+    private void build(Path root, CompileJob job, CompileEngine engine, List<Path> originals,
+            List<Path> editableOriginals) throws Exception {
+        Path tmp = root.resolveSibling(".tmp-" + UUID.randomUUID());
+        Path all = tmp.resolve(CLASSES);
+        Path editable = tmp.resolve("editable");
+        Files.createDirectories(all);
+        Files.createDirectories(editable);
+        try {
+            log.info("Building compile baseline {}.", root.getFileName());
+            if (!compile(job.toBuilder()
+                    .sources(originals)
+                    .classpath(classpathService.resolveClasspath(Set.of(all)))
+                    .output(all)
+                    .directory(tmp)
+                    .build(), engine)
+                    || !compile(job.toBuilder()
+                            .sources(editableOriginals)
+                            .classpath(classpathService.resolveClasspath(Set.of(all)))
+                            .output(editable)
+                            .directory(tmp)
+                            .build(), engine)) {
+                log.info("Original sources do not compile, no compile baseline {}.", root.getFileName());
+                markFailed(root);
+                return;
+            }
+
+            // leave out everything compiled from the editable sources
+            try (Stream<Path> walk = Files.walk(editable)) {
+                for (Path file : walk.filter(Files::isRegularFile).toList()) {
+                    Files.deleteIfExists(all.resolve(editable.relativize(file).toString()));
+                }
+            }
+            Files.writeString(tmp.resolve(SIGNATURE), ApiSignature.of(editable));
+            delete(editable);
+            delete(root);
+            Files.move(tmp, root, StandardCopyOption.ATOMIC_MOVE);
+        } catch (TimeoutException e) {
+            // otherwise every compile waits for another build to time out, on top of its own compile timeout
+            log.info("Building compile baseline {} timed out.", root.getFileName());
+            markFailed(root);
+        } finally {
+            try {
+                delete(tmp);
+            } catch (IOException e) {
+                // a destroyed javac may still be writing classes
+                log.debug("Unable to remove {}.", tmp, e);
+            }
+        }
+    }
+
+    private static void markFailed(Path root) throws IOException {
+        Files.createDirectories(root);
+        Files.write(root.resolve(FAILED), new byte[0]);
+    }
+
+    private static boolean isRecentlyFailed(Path root) throws IOException {
+        Path failed = root.resolve(FAILED);
+        return Files.exists(failed)
+                && Files.getLastModifiedTime(failed).toInstant().plus(FAILED_EXPIRY).isAfter(Instant.now());
+    }
+
+    private boolean compile(CompileJob job, CompileEngine engine) throws Exception {
+        LengthLimitedOutputCatcher output = new LengthLimitedOutputCatcher(
+                mojServerProperties.getLimits().getCompileOutputLimits());
+        LengthLimitedOutputCatcher errorOutput = new LengthLimitedOutputCatcher(
+                mojServerProperties.getLimits().getCompileOutputLimits());
+        boolean success = engine.compile(job, output, errorOutput);
+        if (!success && cancellationService.isCancelled()) {
+            // javac was destroyed, the original sources may compile fine
+            throw new CancellationException("Compile baseline build cancelled.");
+        }
+        if (!success) {
+            log.debug("Compile baseline output: {}{}", output.getBuffer(), errorOutput.getBuffer());
+        }
+        return success;
+    }
+
+    private List<Path> resolveOriginalSources(AssignmentDescriptor ad) {
+        List<Path> result = new ArrayList<>();
+        Sources sources = ad.getAssignmentFiles().getSources();
+        Path base = ad.getDirectory().resolve(sources.getBase());
+        Stream.of(sources.getEditable(), sources.getHidden(), sources.getReadonly())
+                .flatMap(List::stream)
+                .forEach(p -> result.add(base.resolve(p)));
+        TestSources testSources = ad.getAssignmentFiles().getTestSources();
+        if (testSources.getBase() != null) {
+            Path testBase = ad.getDirectory().resolve(testSources.getBase());
+            Stream.of(testSources.getTests(), testSources.getHiddenTests(), testSources.getInvisibleTests())
+                    .flatMap(List::stream)
+                    .forEach(p -> result.add(testBase.resolve(p)));
+        }
+        return result;
+    }
+
+    private List<Path> resolveEditableOriginals(AssignmentDescriptor ad) {
+        Sources sources = ad.getAssignmentFiles().getSources();
+        Path base = ad.getDirectory().resolve(sources.getBase());
+        return sources.getEditable().stream().map(base::resolve).toList();
+    }
+
+    private String key(Workspace workspace, CompileJob job, List<Path> originals) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, workspace.getAssignment().toString());
+        update(digest, job.getJavaVersion().getVersion() + ":" + job.getJavaVersion().getCompiler() + ":"
+                + job.isPreviewEnabled());
+        update(digest, classpathService.fingerprintLibraries());
+        for (Path source : originals) {
+            update(digest, source.toString());
+            digest.update(Files.readAllBytes(source));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private Path getRoot() {
+        return storageService.getCacheFolder().resolve("baseline");
+    }
+
+    private static void delete(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            for (Path p : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
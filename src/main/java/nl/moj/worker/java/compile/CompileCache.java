@@ -0,0 +1,298 @@
+package nl.moj.worker.java.compile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.config.properties.Languages;
+import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.config.properties.Worker;
+import nl.moj.common.storage.StorageService;
+import nl.moj.worker.java.ClasspathService;
+import nl.moj.worker.workspace.Workspace;
+
+/**
+ * Keeps the classes and compiler output of successful and failed compiles on local disk, keyed by a hash of the
+ * sources, the assignment, the libraries and the JDK. Compiling exactly the same sources again restores the classes
+ * instead of running javac. Timed out or aborted compiles are never kept.
+ */
+@Service
+@Slf4j
+public class CompileCache {
+
+    private static final String CLASSES = "classes";
+    private static final String RESULT = "result.json";
+
+    private final MojServerProperties mojServerProperties;
+    private final StorageService storageService;
+    private final ClasspathService classpathService;
+    private final ObjectMapper objectMapper;
+    private final Counter hits;
+    private final Counter misses;
+
+    // entry sizes in bytes, least recently used first
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+    private Path loadedFrom;
+
+    public CompileCache(MojServerProperties mojServerProperties, StorageService storageService,
+            ClasspathService classpathService, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.mojServerProperties = mojServerProperties;
+        this.storageService = storageService;
+        this.classpathService = classpathService;
+        this.objectMapper = objectMapper;
+        this.hits = Counter.builder("moj.worker.compile.cache").tag("result", "hit").register(meterRegistry);
+        this.misses = Counter.builder("moj.worker.compile.cache").tag("result", "miss").register(meterRegistry);
+        Gauge.builder("moj.worker.compile.cache.size", this, CompileCache::getSize).baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return getSettings().isEnabled();
+    }
+
+    /**
+     * Calculates the cache key of the workspace. All sources in the workspace are hashed, this covers both the
+     * files of the team and changes to the assignment itself. The libraries on the compile classpath are hashed
+     * too, they may change without the assignment changing.
+     */
+    public String key(Workspace workspace, Languages.JavaVersion javaVersion, boolean previewEnabled,
+            List<Path> sources) throws IOException {
+        MessageDigest digest = sha256();
+        update(digest, workspace.getAssignment().toString());
+        update(digest, javaVersion.getVersion() + ":" + javaVersion.getCompiler() + ":" + previewEnabled);
+        update(digest, classpathService.fingerprintLibraries());
+        for (Path source : sources.stream().sorted().toList()) {
+            update(digest, workspace.getSourcesRoot().relativize(source).toString());
+            digest.update(Files.readAllBytes(source));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Copies the cached classes for the key to the target directory.
+     *
+     * @return the cached compile output, or empty if nothing was cached for the key.
+     */
+    public Optional<CompileOutput> restore(String key, Path target) {
+        Path entry = resolveEntry(key);
+        if (entry == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+        try {
+            CachedResult result = objectMapper.readValue(entry.resolve(RESULT).toFile(), CachedResult.class);
+            copyClasses(entry.resolve(CLASSES), target);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.increment();
+            log.info("Restored compile result {} from cache.", key);
+            return Optional.of(CompileOutput.builder()
+                    .output(result.output())
+                    .errorOutput(result.errorOutput())
+                    .success(result.success())
+                    .build());
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Unable to restore compile result {} from cache, compiling.", key, e);
+            remove(key);
+            misses.increment();
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Keeps the classes in the target directory and the output of the compile under the key.
+     */
+    public void store(String key, CompileOutput output, Path target) {
+        if (output.isTimedOut() || output.isAborted()) {
+            return;
+        }
+        Path root = getRoot();
+        Path tmp = root.resolve(".tmp-" + UUID.randomUUID());
+        try {
+            Files.createDirectories(tmp.resolve(CLASSES));
+            long entrySize = copyClasses(target, tmp.resolve(CLASSES));
+            objectMapper.writeValue(tmp.resolve(RESULT).toFile(),
+                    new CachedResult(output.getOutput(), output.getErrorOutput(), output.isSuccess()));
+            entrySize += Files.size(tmp.resolve(RESULT));
+            try {
+                Files.move(tmp, root.resolve(key), StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // stored concurrently by another compile of the same sources
+                delete(tmp);
+                return;
+            }
+            add(key, entrySize);
+            log.debug("Stored compile result {} in cache.", key);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Unable to store compile result {} in cache.", key, e);
+            delete(tmp);
+        }
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    private synchronized Path resolveEntry(String key) {
+        load();
+        if (entries.get(key) == null) {
+            return null;
+        }
+        Path entry = getRoot().resolve(key);
+        if (!Files.isDirectory(entry)) {
+            size -= entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void add(String key, long entrySize) {
+        load();
+        Long previous = entries.put(key, entrySize);
+        size += entrySize - (previous != null ? previous : 0);
+        evict();
+    }
+
+    private synchronized void remove(String key) {
+        Long entrySize = entries.remove(key);
+        if (entrySize != null) {
+            size -= entrySize;
+        }
+        delete(getRoot().resolve(key));
+    }
+
+    private void evict() {
+        long maxSize = getSettings().getMaxSize().toBytes();
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            size -= eldest.getValue();
+            delete(getRoot().resolve(eldest.getKey()));
+            log.debug("Evicted compile result {} from cache.", eldest.getKey());
+        }
+    }
+
+    /**
+     * Indexes the results left on disk by an earlier run of this worker, oldest first.
+     */
+    private void load() {
+        Path root = getRoot();
+        if (root.equals(loadedFrom)) {
+            return;
+        }
+        entries.clear();
+        size = 0;
+        try {
+            Files.createDirectories(root);
+            try (Stream<Path> list = Files.list(root)) {
+                Map<Path, FileTime> found = list.collect(Collectors.toMap(p -> p, CompileCache::lastModified));
+                found.entrySet().stream()
+                        .sorted(Map.Entry.comparingByValue())
+                        .forEach(e -> {
+                            if (e.getKey().getFileName().toString().startsWith(".tmp-")) {
+                                delete(e.getKey());
+                            } else {
+                                long entrySize = sizeOf(e.getKey());
+                                entries.put(e.getKey().getFileName().toString(), entrySize);
+                                size += entrySize;
+                            }
+                        });
+            }
+            loadedFrom = root;
+            evict();
+            log.info("Loaded {} compile results from cache {}.", entries.size(), root);
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Unable to load compile cache from {}.", root, e);
+        }
+    }
+
+    private Path getRoot() {
+        Path directory = getSettings().getDirectory();
+        return directory != null ? directory : storageService.getCacheFolder().resolve("compile");
+    }
+
+    private Worker.CompileCache getSettings() {
+        return mojServerProperties.getWorker().getCompileCache();
+    }
+
+    private record CachedResult(String output, String errorOutput, boolean success) {
+    }
+
+    private static long copyClasses(Path from, Path to) throws IOException {
+        long copied = 0;
+        try (Stream<Path> walk = Files.walk(from)) {
+            for (Path file : walk.filter(p -> p.toString().endsWith(".class")).toList()) {
+                Path target = to.resolve(from.relativize(file).toString());
+                Files.createDirectories(target.getParent());
+                Files.copy(file, target, StandardCopyOption.REPLACE_EXISTING);
+                copied += Files.size(target);
+            }
+        }
+        return copied;
+    }
+
+    private static long sizeOf(Path path) {
+        try (Stream<Path> walk = Files.walk(path)) {
+            return walk.filter(Files::isRegularFile).mapToLong(p -> p.toFile().length()).sum();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static FileTime lastModified(Path path) {
+        try {
+            return Files.getLastModifiedTime(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void delete(Path path) {
+        if (!Files.exists(path)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(path)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            log.warn("Unable to delete {}.", path, e);
+        }
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
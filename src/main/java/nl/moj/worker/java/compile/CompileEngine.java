@@ -0,0 +1,25 @@
+package nl.moj.worker.java.compile;
+
+import java.util.concurrent.TimeoutException;
+
+import nl.moj.worker.util.LengthLimitedOutputCatcher;
+
+/**
+ * Runs javac for a {@link CompileJob}, writing class files to the output directory of the job.
+ */
+public interface CompileEngine {
+
+    /**
+     * @return true if this engine is able to compile the given job.
+     */
+    boolean supports(CompileJob job);
+
+    /**
+     * Compiles the job, sending the compiler output to the given catchers.
+     *
+     * @return true if compilation succeeded.
+     * @throws TimeoutException if compilation did not finish within the timeout of the job.
+     */
+    boolean compile(CompileJob job, LengthLimitedOutputCatcher output, LengthLimitedOutputCatcher errorOutput)
+            throws Exception;
+}
@@ -0,0 +1,22 @@
+package nl.moj.worker.java.compile;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+import nl.moj.common.config.properties.Languages;
+
+@Value
+@Builder(toBuilder = true)
+public class CompileJob {
+
+    Languages.JavaVersion javaVersion;
+    boolean previewEnabled;
+    List<Path> sources;
+    String classpath;
+    Path output;
+    Path directory;
+    Duration timeout;
+}
@@ -1,6 +1,7 @@
 package nl.moj.worker.java.compile;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Duration;
@@ -8,19 +9,18 @@ import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.stream.Stream;
 
 import org.springframework.stereotype.Service;
-import org.zeroturnaround.exec.ProcessExecutor;
-import org.zeroturnaround.exec.ProcessResult;
-import org.zeroturnaround.exec.listener.ProcessListener;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
 import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.config.properties.Worker;
+import nl.moj.common.toolchain.ToolchainService;
+import nl.moj.worker.CancellationService;
 import nl.moj.worker.java.ClasspathService;
 import nl.moj.worker.util.LengthLimitedOutputCatcher;
 import nl.moj.worker.workspace.Workspace;
@@ -31,7 +31,13 @@ import nl.moj.worker.workspace.Workspace;
 public class CompileRunnerService {
 
     private final MojServerProperties mojServerProperties;
+    private final ToolchainService toolchainService;
     private final ClasspathService classpathService;
+    private final ForkedCompileEngine forkedCompileEngine;
+    private final InProcessCompileEngine inProcessCompileEngine;
+    private final CompileCache compileCache;
+    private final CompileBaselineService compileBaselineService;
+    private final CancellationService cancellationService;
 
     public CompileOutput compile(Workspace workspace) {
 
@@ -44,91 +50,46 @@ public class CompileRunnerService {
         try {
             // find java compiler
             AssignmentDescriptor ad = workspace.getAssignmentDescriptor();
-            var javaVersion = mojServerProperties.getLanguages().getJavaVersion(ad.getJavaVersion());
+            var javaVersion = toolchainService.getJavaVersion(ad.getJavaVersion());
 
-            // configure output limits
-            final LengthLimitedOutputCatcher compileOutput = new LengthLimitedOutputCatcher(
-                    mojServerProperties.getLimits().getCompileOutputLimits());
-            final LengthLimitedOutputCatcher compileErrorOutput = new LengthLimitedOutputCatcher(
-                    mojServerProperties.getLimits().getCompileOutputLimits());
             final Duration timeout = ad.getCompileTimeout() != null ? ad.getCompileTimeout()
                     : mojServerProperties.getLimits().getCompileTimeout();
 
             // build and run javac command
-            try {
-                List<String> cmd = new ArrayList<>();
-                cmd.add(javaVersion.getCompiler().toString());
-                cmd.add("-Xlint:all");
-
-                boolean enablePreviewFeatures = ad.isJavaPreviewEnabled();
-                if (javaVersion.getVersion() >= 11 && enablePreviewFeatures) {
-                    cmd.add("--enable-preview");
-                    cmd.add("--release");
-                    cmd.add("" + javaVersion.getVersion());
-                }
+            CompileJob job = CompileJob.builder()
+                    .javaVersion(javaVersion)
+                    .previewEnabled(ad.isJavaPreviewEnabled())
+                    .sources(resolveSources(workspace))
+                    .classpath(classpathService.resolveClasspath(Set.of(workspace.getTargetRoot())))
+                    .output(workspace.getTargetRoot())
+                    .directory(workspace.getRoot())
+                    .timeout(timeout)
+                    .build();
 
-                cmd.add("-encoding");
-                cmd.add("UTF8");
-                cmd.add("-g:source,lines,vars");
-                cmd.add("-cp");
-                cmd.add(classpathService.resolveClasspath(Set.of(workspace.getTargetRoot())));
-                cmd.add("-d");
-                cmd.add(workspace.getTargetRoot().toAbsolutePath().toString());
-                try (Stream<Path> sources = workspace.getSources()) {
-                    sources.forEach(s -> {
-                        if (!Files.isDirectory(s)) {
-                            if (!Files.exists(s)) {
-                                throw new IllegalStateException(
-                                        "Source file " + s + " does not exist in workspace, though was found listing it.");
-                            }
-                            cmd.add(s.toAbsolutePath().toString());
-                        }
-                    });
+            String cacheKey = null;
+            if (compileCache.isEnabled()) {
+                cacheKey = compileCache.key(workspace, javaVersion, ad.isJavaPreviewEnabled(), job.getSources());
+                var cached = compileCache.restore(cacheKey, workspace.getTargetRoot());
+                if (cached.isPresent()) {
+                    log.info("Compile finished, restored from cache.");
+                    return cached.get().toBuilder()
+                            .dateTimeStart(co.getDateTimeStart())
+                            .dateTimeEnd(Instant.now())
+                            .build();
                 }
+            }
 
-                long closeTimeout = timeout.toSeconds() + 4;
-
-                final ProcessResult processResult = new ProcessExecutor(cmd)
-                        .destroyOnExit().closeTimeout(closeTimeout, TimeUnit.SECONDS)
-                        .directory(workspace.getRoot().toFile())
-                        .timeout(timeout.toSeconds(), TimeUnit.SECONDS).redirectOutput(compileOutput)
-                        .redirectError(compileErrorOutput)
-                        .addListener(new ProcessListener() {
-                            @Override
-                            public void afterStart(Process process, ProcessExecutor executor) {
-                                log.info("Executed: {}", process.info().commandLine().orElse("<none>"));
-                            }
-                        }).execute();
-                co.setSuccess(processResult.getExitValue() == 0);
-
-                //                InputStream is = commandExecutor.pumps().getInput();
-                //                OutputStream error = commandExecutor.pumps().getErr();
-                //                OutputStream out = commandExecutor.pumps().getOut();
-                //                commandExecutor.pumps().flush();
-                //
-                //                if (is != null) {
-                //                    is.close();
-                //                }
-                //                if (error != null) {
-                //                    error.close();
-                //                }
-                //                if (out != null) {
-                //                    out.close();
-                //                }
-                //                commandExecutor.pumps().stop();
-                co.setDateTimeEnd(Instant.now());
-
-            } catch (TimeoutException e) {
-                // process is automatically destroyed
-                co.setTimedOut(true);
-                co.setDateTimeEnd(Instant.now());
-                co.setReason("Compiling timed out.");
-                compileOutput.getBuffer()
-                        .append(mojServerProperties.getLimits().getCompileOutputLimits().getTimeoutMessage());
+            CompileEngine engine = resolveEngine(job);
+            var baseline = compileBaselineService.getBaseline(workspace, job, engine);
+            if (baseline.isEmpty() || !compileIncremental(workspace, job, engine, baseline.get(), co)) {
+                run(workspace, job, engine, co);
             }
+            co.setDateTimeEnd(Instant.now());
 
-            co.setOutput(stripTeamPathInfo(compileOutput.getBuffer(), workspace.getSourcesRoot()));
-            co.setErrorOutput(stripTeamPathInfo(compileErrorOutput.getBuffer(), workspace.getSourcesRoot()));
+            // a destroyed javac fails, that says nothing about the sources
+            if (cacheKey != null && !cancellationService.isCancelled()) {
+                compileCache.store(cacheKey, co, workspace.getTargetRoot());
+            }
 
             log.info("Compile finished.");
 
@@ -145,6 +106,101 @@ public class CompileRunnerService {
         }
     }
 
+    /**
+     * Compiles only the editable sources against the baseline. Errors in the editable sources are reported as they are,
+     * only sources that compile but no longer match the API of the baseline need all sources to be compiled.
+     *
+     * @return false if all sources need to be compiled after all.
+     */
+    private boolean compileIncremental(Workspace workspace, CompileJob job, CompileEngine engine,
+            CompileBaseline baseline, CompileOutput co) throws Exception {
+        CompileJob incremental = job.toBuilder()
+                .sources(baseline.getEditable())
+                .classpath(classpathService.resolveClasspath(
+                        List.of(workspace.getTargetRoot(), baseline.getClasses())))
+                .build();
+        run(workspace, incremental, engine, co);
+        if (co.isTimedOut() || !co.isSuccess()) {
+            // compiling all sources would only report the same errors, and take another compile timeout
+            return true;
+        }
+        if (baseline.getSignature().equals(ApiSignature.of(workspace.getTargetRoot()))) {
+            compileBaselineService.linkInto(baseline, workspace.getTargetRoot());
+            log.debug("Compiled editable sources against compile baseline.");
+            return true;
+        }
+        log.debug("Editable sources do not match API of compile baseline, compiling all sources.");
+        deleteClasses(workspace.getTargetRoot());
+        return false;
+    }
+
+    private void run(Workspace workspace, CompileJob job, CompileEngine engine, CompileOutput co) throws Exception {
+        // configure output limits
+        final LengthLimitedOutputCatcher compileOutput = new LengthLimitedOutputCatcher(
+                mojServerProperties.getLimits().getCompileOutputLimits());
+        final LengthLimitedOutputCatcher compileErrorOutput = new LengthLimitedOutputCatcher(
+                mojServerProperties.getLimits().getCompileOutputLimits());
+        try {
+            co.setSuccess(engine.compile(job, compileOutput, compileErrorOutput));
+        } catch (TimeoutException e) {
+            // process is automatically destroyed, in-process compilation is cancelled
+            co.setTimedOut(true);
+            co.setReason("Compiling timed out.");
+            compileOutput.getBuffer()
+                    .append(mojServerProperties.getLimits().getCompileOutputLimits().getTimeoutMessage());
+        }
+        co.setOutput(stripTeamPathInfo(compileOutput.getBuffer(), workspace.getSourcesRoot()));
+        co.setErrorOutput(stripTeamPathInfo(compileErrorOutput.getBuffer(), workspace.getSourcesRoot()));
+    }
+
+    /**
+     * Loads the in-process compiler ahead of the first compile, if it is going to be used.
+     */
+    public void warmUp() {
+        if (mojServerProperties.getWorker().getCompiler().getEngine() == Worker.CompilerEngine.IN_PROCESS) {
+            inProcessCompileEngine.warmUp();
+        }
+    }
+
+    private CompileEngine resolveEngine(CompileJob job) {
+        if (mojServerProperties.getWorker().getCompiler().getEngine() == Worker.CompilerEngine.IN_PROCESS) {
+            if (!inProcessCompileEngine.supports(job)) {
+                log.debug("In-process compilation not supported for Java {}, forking javac.",
+                        job.getJavaVersion().getVersion());
+            } else if (inProcessCompileEngine.hasAbandonedCompilations()) {
+                // do not add to the threads of compilations that did not stop
+                log.debug("In-process compilations still running after their timeout, forking javac.");
+            } else {
+                return inProcessCompileEngine;
+            }
+        }
+        return forkedCompileEngine;
+    }
+
+    private List<Path> resolveSources(Workspace workspace) throws IOException {
+        List<Path> result = new ArrayList<>();
+        try (Stream<Path> sources = workspace.getSources()) {
+            sources.forEach(s -> {
+                if (!Files.isDirectory(s)) {
+                    if (!Files.exists(s)) {
+                        throw new IllegalStateException(
+                                "Source file " + s + " does not exist in workspace, though was found listing it.");
+                    }
+                    result.add(s);
+                }
+            });
+        }
+        return result;
+    }
+
+    private void deleteClasses(Path target) throws IOException {
+        try (Stream<Path> walk = Files.walk(target)) {
+            for (Path file : walk.filter(p -> p.toString().endsWith(".class")).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
     private String stripTeamPathInfo(StringBuilder result, Path prefix) {
         if (result != null) {
             return result.toString().replace(prefix.toAbsolutePath() + File.separator, "");
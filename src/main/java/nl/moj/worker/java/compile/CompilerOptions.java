@@ -0,0 +1,33 @@
+package nl.moj.worker.java.compile;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The javac options shared by all compile engines, so forked and in-process compiles behave the same.
+ */
+final class CompilerOptions {
+
+    private CompilerOptions() {
+    }
+
+    static List<String> of(CompileJob job) {
+        List<String> options = new ArrayList<>();
+        options.add("-Xlint:all");
+        if (job.getJavaVersion().getVersion() >= 11 && job.isPreviewEnabled()) {
+            options.add("--enable-preview");
+            options.add("--release");
+            options.add("" + job.getJavaVersion().getVersion());
+        }
+        options.add("-encoding");
+        options.add("UTF8");
+        options.add("-g:source,lines,vars");
+        // annotation processors on the assignment classpath would run unsandboxed in the worker
+        options.add("-proc:none");
+        options.add("-cp");
+        options.add(job.getClasspath());
+        options.add("-d");
+        options.add(job.getOutput().toAbsolutePath().toString());
+        return options;
+    }
+}
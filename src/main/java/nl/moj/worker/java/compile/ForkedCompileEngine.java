@@ -0,0 +1,60 @@
+package nl.moj.worker.java.compile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.stereotype.Service;
+import org.zeroturnaround.exec.ProcessExecutor;
+import org.zeroturnaround.exec.ProcessResult;
+import org.zeroturnaround.exec.listener.ProcessListener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.worker.CancellationService;
+import nl.moj.worker.java.ClassDataSharingService;
+import nl.moj.worker.util.LengthLimitedOutputCatcher;
+
+/**
+ * Compiles by forking the javac executable of the requested Java version.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ForkedCompileEngine implements CompileEngine {
+
+    private final ClassDataSharingService classDataSharingService;
+    private final CancellationService cancellationService;
+
+    @Override
+    public boolean supports(CompileJob job) {
+        return true;
+    }
+
+    @Override
+    public boolean compile(CompileJob job, LengthLimitedOutputCatcher output, LengthLimitedOutputCatcher errorOutput)
+            throws Exception {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(job.getJavaVersion().getCompiler().toString());
+        cmd.addAll(classDataSharingService.compilerOptions(job.getJavaVersion()));
+        cmd.addAll(CompilerOptions.of(job));
+        job.getSources().forEach(s -> cmd.add(s.toAbsolutePath().toString()));
+
+        long closeTimeout = job.getTimeout().toSeconds() + 4;
+
+        final ProcessResult processResult = new ProcessExecutor(cmd)
+                .destroyOnExit().closeTimeout(closeTimeout, TimeUnit.SECONDS)
+                .directory(job.getDirectory().toFile())
+                .timeout(job.getTimeout().toSeconds(), TimeUnit.SECONDS).redirectOutput(output)
+                .redirectError(errorOutput)
+                .addListener(new ProcessListener() {
+                    @Override
+                    public void afterStart(Process process, ProcessExecutor executor) {
+                        log.info("Executed: {}", process.info().commandLine().orElse("<none>"));
+                    }
+                })
+                .addListener(cancellationService.processListener())
+                .execute();
+        return processResult.getExitValue() == 0;
+    }
+}
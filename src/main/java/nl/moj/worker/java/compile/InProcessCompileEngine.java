@@ -0,0 +1,262 @@
+package nl.moj.worker.java.compile;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.springframework.stereotype.Service;
+
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.server.util.NamedThreadFactory;
+import nl.moj.worker.util.LengthLimitedOutputCatcher;
+
+/**
+ * Compiles inside the worker JVM using the system {@link JavaCompiler}. Sources are read into memory and class
+ * files are kept in memory until compilation succeeded, only then they are written to the output directory.
+ * Since the compiler of the worker JVM is used, only jobs for the Java version of the worker are supported.
+ * <p>
+ * javac can only be cancelled between its phases, a compilation stuck in a single phase keeps its thread busy after
+ * it timed out. Such compilations are counted as abandoned, while there are any compiles are forked instead.
+ */
+@Service
+@Slf4j
+public class InProcessCompileEngine implements CompileEngine {
+
+    private static final String WARM_UP_SOURCE = "public class WarmUp { public static void main(String[] args) { System.out.println(java.util.List.of(args)); } }";
+
+    private static final int QUEUED = 0;
+    private static final int RUNNING = 1;
+    private static final int FINISHED = 2;
+    private static final int ABANDONED = 3;
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    private final ExecutorService executor;
+    private final AtomicInteger abandoned = new AtomicInteger();
+
+    public InProcessCompileEngine(MojServerProperties mojServerProperties, MeterRegistry meterRegistry) {
+        this.executor = Executors.newFixedThreadPool(mojServerProperties.getRuntime().getGameThreads(),
+                new NamedThreadFactory("javac"));
+        Gauge.builder("moj.worker.compiler.abandoned", abandoned, AtomicInteger::get).register(meterRegistry);
+    }
+
+    @Override
+    public boolean supports(CompileJob job) {
+        return compiler != null && job.getJavaVersion().getVersion() == Runtime.version().feature();
+    }
+
+    /**
+     * @return true if compilations that timed out are still running.
+     */
+    public boolean hasAbandonedCompilations() {
+        return abandoned.get() > 0;
+    }
+
+    @Override
+    public boolean compile(CompileJob job, LengthLimitedOutputCatcher output, LengthLimitedOutputCatcher errorOutput)
+            throws Exception {
+        List<JavaFileObject> sources = job.getSources().stream()
+                .map(InProcessCompileEngine::readSource)
+                .collect(Collectors.toList());
+
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicInteger state = new AtomicInteger(QUEUED);
+        Future<Boolean> result = executor.submit(() -> {
+            if (!state.compareAndSet(QUEUED, RUNNING)) {
+                return false;
+            }
+            MemoryFileManager fileManager = new MemoryFileManager(compiler.getStandardFileManager(null, null,
+                    StandardCharsets.UTF_8));
+            Writer out = new OutputStreamWriter(errorOutput, StandardCharsets.UTF_8);
+            try (fileManager) {
+                JavacTask task = (JavacTask) compiler.getTask(out, fileManager, null, CompilerOptions.of(job), null,
+                        sources);
+                task.addTaskListener(new CancellationListener(cancelled));
+                boolean success = task.call();
+                if (success) {
+                    fileManager.writeClasses(job.getOutput());
+                }
+                return success;
+            } finally {
+                if (!state.compareAndSet(RUNNING, FINISHED)) {
+                    log.info("Abandoned in-process compilation finished, {} still running.",
+                            abandoned.decrementAndGet());
+                }
+                out.flush();
+                errorOutput.flush();
+            }
+        });
+
+        try {
+            return result.get(job.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            abandon(cancelled, state, result);
+            throw e;
+        } catch (InterruptedException e) {
+            abandon(cancelled, state, result);
+            Thread.currentThread().interrupt();
+            throw e;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("In-process compilation failed: " + e.getCause().getMessage(),
+                    e.getCause());
+        }
+    }
+
+    private void abandon(AtomicBoolean cancelled, AtomicInteger state, Future<Boolean> result) {
+        cancelled.set(true);
+        result.cancel(true);
+        if (state.compareAndSet(RUNNING, ABANDONED)) {
+            log.warn("In-process compilation did not stop, {} abandoned compilations running.",
+                    abandoned.incrementAndGet());
+        } else {
+            state.compareAndSet(QUEUED, ABANDONED);
+        }
+    }
+
+    /**
+     * Runs a throw-away compilation so the compiler classes are loaded and JIT compiled before the first team
+     * compiles.
+     */
+    public void warmUp() {
+        if (compiler == null) {
+            log.warn("No system Java compiler available, in-process compilation is not possible.");
+            return;
+        }
+        long start = System.currentTimeMillis();
+        JavaFileObject source = new SourceFile(URI.create("string:///WarmUp.java"), WARM_UP_SOURCE);
+        try (MemoryFileManager fileManager = new MemoryFileManager(compiler.getStandardFileManager(null, null,
+                StandardCharsets.UTF_8))) {
+            compiler.getTask(Writer.nullWriter(), fileManager, null, List.of("-Xlint:all", "-proc:none"), null,
+                    List.of(source))
+                    .call();
+        } catch (IOException e) {
+            log.warn("Warming up in-process compiler failed.", e);
+        }
+        log.info("Warmed up in-process compiler in {} ms.", System.currentTimeMillis() - start);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static JavaFileObject readSource(Path path) {
+        try {
+            return new SourceFile(path.toAbsolutePath().toUri(), Files.readString(path));
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read source file " + path + ".", e);
+        }
+    }
+
+    /**
+     * Source held in memory. The URI of the original file is kept so diagnostics report the same paths as a
+     * forked javac does.
+     */
+    private static class SourceFile extends SimpleJavaFileObject {
+
+        private final String content;
+
+        SourceFile(URI uri, String content) {
+            super(uri, Kind.SOURCE);
+            this.content = content;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return content;
+        }
+    }
+
+    private static class ClassFile extends SimpleJavaFileObject {
+
+        private final ByteArrayOutputStream content = new ByteArrayOutputStream();
+
+        ClassFile(String className) {
+            super(URI.create("mem:///" + className.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return content;
+        }
+    }
+
+    private static class MemoryFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+        private final Map<String, ClassFile> classes = new ConcurrentHashMap<>();
+
+        MemoryFileManager(StandardJavaFileManager fileManager) {
+            super(fileManager);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                FileObject sibling) throws IOException {
+            if (location == StandardLocation.CLASS_OUTPUT && kind == JavaFileObject.Kind.CLASS) {
+                return classes.computeIfAbsent(className, ClassFile::new);
+            }
+            return super.getJavaFileForOutput(location, className, kind, sibling);
+        }
+
+        void writeClasses(Path output) throws IOException {
+            for (Map.Entry<String, ClassFile> entry : classes.entrySet()) {
+                Path target = output.resolve(entry.getKey().replace('.', '/') + JavaFileObject.Kind.CLASS.extension);
+                Files.createDirectories(target.getParent());
+                Files.write(target, entry.getValue().content.toByteArray());
+            }
+        }
+    }
+
+    /**
+     * Aborts a running compilation as soon as javac starts its next phase after the compilation was cancelled.
+     */
+    private static class CancellationListener implements TaskListener {
+
+        private final AtomicBoolean cancelled;
+
+        CancellationListener(AtomicBoolean cancelled) {
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        public void started(TaskEvent e) {
+            if (cancelled.get()) {
+                throw new IllegalStateException("Compilation cancelled.");
+            }
+        }
+    }
+}
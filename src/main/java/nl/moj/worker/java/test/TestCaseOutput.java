@@ -17,6 +17,8 @@
 package nl.moj.worker.java.test;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.UUID;
 
 import lombok.Builder;
@@ -40,4 +42,7 @@ public class TestCaseOutput {
 
     private Instant dateTimeStart;
     private Instant dateTimeEnd;
+
+    @Builder.Default
+    private List<TestMethodOutput> methodResults = new ArrayList<>();
 }
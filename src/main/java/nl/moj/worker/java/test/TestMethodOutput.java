@@ -0,0 +1,18 @@
+package nl.moj.worker.java.test;
+
+import java.time.Duration;
+
+import lombok.Builder;
+import lombok.Value;
+import nl.moj.common.messages.JMSTestMethodResult;
+
+@Value
+@Builder
+public class TestMethodOutput {
+
+    String name;
+    JMSTestMethodResult.Status status;
+    Duration duration;
+    String message;
+    String trace;
+}
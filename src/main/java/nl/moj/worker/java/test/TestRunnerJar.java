@@ -0,0 +1,68 @@
+package nl.moj.worker.java.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import nl.moj.common.storage.StorageService;
+import nl.moj.worker.java.test.runner.TestRunner;
+
+/**
+ * The {@link TestRunner} classes of this worker, packaged in a jar in the libs folder so test JVMs can run them.
+ */
+@Component
+@RequiredArgsConstructor
+public class TestRunnerJar {
+
+    public static final String RUNNER_JAR = "moj-test-runner.jar";
+
+    private static final String RUNNER_CLASSES = "nl/moj/worker/java/test/runner/";
+
+    private final StorageService storageService;
+
+    private Path runnerJar;
+
+    /**
+     * Packages the jar once per worker start or when the libs folder was cleaned. An existing jar with the same
+     * content is kept as is, class data sharing archives depend on its modification time.
+     */
+    public synchronized Path resolve() throws IOException {
+        if (runnerJar == null || !Files.exists(runnerJar)) {
+            ByteArrayOutputStream content = new ByteArrayOutputStream();
+            try (JarOutputStream out = new JarOutputStream(content)) {
+                Resource[] classes = new PathMatchingResourcePatternResolver()
+                        .getResources("classpath*:" + RUNNER_CLASSES + "*.class");
+                Arrays.sort(classes, (a, b) -> String.valueOf(a.getFilename()).compareTo(b.getFilename()));
+                for (Resource c : classes) {
+                    JarEntry entry = new JarEntry(RUNNER_CLASSES + c.getFilename());
+                    entry.setTime(0);
+                    out.putNextEntry(entry);
+                    try (InputStream in = c.getInputStream()) {
+                        in.transferTo(out);
+                    }
+                    out.closeEntry();
+                }
+            }
+            Path jar = storageService.getLibsFolder().resolve(RUNNER_JAR);
+            if (!Files.exists(jar) || !Arrays.equals(Files.readAllBytes(jar), content.toByteArray())) {
+                Path tmp = Files.createTempFile(storageService.getLibsFolder(), "runner", ".jar");
+                Files.write(tmp, content.toByteArray());
+                Files.move(tmp, jar, StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            }
+            runnerJar = jar;
+        }
+        return runnerJar;
+    }
+}
@@ -1,5 +1,9 @@
 package nl.moj.worker.java.test;
 
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
@@ -7,22 +11,39 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import org.springframework.stereotype.Service;
 import org.zeroturnaround.exec.ProcessExecutor;
 import org.zeroturnaround.exec.ProcessResult;
 import org.zeroturnaround.exec.listener.ProcessListener;
+import org.zeroturnaround.exec.stream.LogOutputStream;
+import org.zeroturnaround.exec.stream.slf4j.Slf4jStream;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
+import nl.moj.common.assignment.descriptor.ExecutionModel;
+import nl.moj.common.config.properties.Languages;
+import nl.moj.common.config.properties.Limits;
 import nl.moj.common.config.properties.MojServerProperties;
 import nl.moj.common.messages.JMSTestCase;
 import nl.moj.common.storage.StorageService;
-import nl.moj.worker.java.ClasspathService;
+import nl.moj.common.toolchain.ToolchainService;
+import nl.moj.worker.CancellationService;
+import nl.moj.worker.java.ClassDataSharingService;
+import nl.moj.worker.java.test.pool.RunnerEvents;
+import nl.moj.worker.java.test.pool.RunnerProfile;
+import nl.moj.worker.java.test.pool.TestRunnerPool;
+import nl.moj.worker.java.test.runner.TestRunner;
 import nl.moj.worker.util.LengthLimitedOutputCatcher;
+import nl.moj.worker.util.OutputLimitExceededException;
 import nl.moj.worker.workspace.Workspace;
 
 @Service
@@ -34,13 +55,15 @@ public class TestRunnerService {
 
     private static final Pattern JUNIT_PREFIX_P = Pattern.compile("^JUnit version.*$|^\\.$|^I$|^E$",
             Pattern.MULTILINE);
-    private static final Pattern WARN_SECURITY_MANAGER = Pattern.compile("^WARNING:.+Security Manager.*$",
-            Pattern.MULTILINE);
 
     private final MojServerProperties mojServerProperties;
-    private final ClasspathService classpathService;
+    private final ClassDataSharingService classDataSharingService;
 
     private final StorageService storageService;
+    private final ToolchainService toolchainService;
+    private final TestRunnerPool testRunnerPool;
+    private final MeterRegistry meterRegistry;
+    private final CancellationService cancellationService;
 
     public TestCaseOutput test(Workspace workspace, JMSTestCase test) {
         TestCaseOutput to = TestCaseOutput.builder()
@@ -70,41 +93,28 @@ public class TestRunnerService {
                     final LengthLimitedOutputCatcher jUnitError = new LengthLimitedOutputCatcher(
                             mojServerProperties.getLimits().getTestOutputLimits())) {
 
+                boolean consoleOutput = false;
                 try {
-                    List<String> cmd = new ArrayList<>();
-                    cmd.add(
-                            mojServerProperties.getLanguages()
-                                    .getJavaVersion(ad.getJavaVersion())
-                                    .getRuntime()
-                                    .toString());
-                    if (ad.getJavaVersion() > 11) {
-                        cmd.add("--enable-preview");
+                    Languages.JavaVersion javaVersion = toolchainService.getJavaVersion(ad.getJavaVersion());
+                    RunnerProfile profile = RunnerProfile.builder()
+                            .javaVersion(javaVersion)
+                            .policy(policy)
+                            .systemProperties(resolveSystemProperties(ad))
+                            .build();
+                    if (testRunnerPool.supports(javaVersion)) {
+                        log.info("Test case {} {} executing in pooled runner.", test.getTestCase(), test.getName());
+                        to.setSuccess(testRunnerPool.run(profile, test.getName(),
+                                List.of(workspace.getTargetRoot()), timeout,
+                                mojServerProperties.getLimits().getTestOutputLimits(), jUnitOutput, jUnitError,
+                                to.getMethodResults()));
+                    } else if (javaVersion.getVersion() >= TestRunnerPool.MINIMUM_JAVA_VERSION) {
+                        to.setSuccess(runSingle(workspace, test, profile, timeout, to, jUnitOutput, jUnitError));
+                    } else {
+                        // the bundled runner needs a newer JVM, use the JUnit console runner
+                        consoleOutput = true;
+                        to.setSuccess(runForked(workspace, test, javaVersion, policy, timeout, jUnitOutput,
+                                jUnitError));
                     }
-                    cmd.add("-cp");
-                    cmd.add(classpathService.resolveClasspath(List.of(workspace.getTargetRoot())));
-                    cmd.add("-Djava.security.manager");
-                    cmd.add("-Djava.security.policy=" + policy.toAbsolutePath());
-                    cmd.addAll(resolveSystemProperties(ad));
-                    cmd.add("org.junit.runner.JUnitCore");
-
-                    // this expects a class name
-                    cmd.add(test.getName());
-
-                    final ProcessResult pr = new ProcessExecutor()
-                            .command(cmd)
-                            .directory(workspace.getRoot().toFile())
-                            .timeout(timeout.toSeconds(), TimeUnit.SECONDS)
-                            .redirectOutput(jUnitOutput)
-                            .redirectError(jUnitError)
-                            .addListener(new ProcessListener() {
-                                @Override
-                                public void afterStart(Process process, ProcessExecutor executor) {
-                                    log.info("Test case {} {} executing: {}", test.getTestCase(), test.getName(), process.info()
-                                            .commandLine()
-                                            .orElse("<none>"));
-                                }
-                            }).execute();
-                    to.setSuccess(pr.getExitValue() == 0);
                     to.setDateTimeEnd(Instant.now());
 
                 } catch (TimeoutException e) {
@@ -114,6 +124,15 @@ public class TestRunnerService {
                     to.setReason("Compiling timed out.");
                     jUnitOutput.getBuffer().append('\n')
                             .append(mojServerProperties.getLimits().getTestOutputLimits().getTimeoutMessage());
+                } catch (OutputLimitExceededException e) {
+                    log.info("Test case {} {} exceeded the output limit, stopped it.", test.getTestCase(),
+                            test.getName());
+                    meterRegistry.counter("moj.worker.process.killed", "reason", "output-limit").increment();
+                    to.setAborted(true);
+                    to.setDateTimeEnd(Instant.now());
+                    to.setReason("Output limit exceeded.");
+                    jUnitOutput.getBuffer().append('\n')
+                            .append(mojServerProperties.getLimits().getTestOutputLimits().getOutputLimitMessage());
                 } catch (SecurityException se) {
                     log.info("Test case {} {} aborted.", test.getTestCase(), test.getName(), se);
                     to.setAborted(true);
@@ -122,8 +141,13 @@ public class TestRunnerService {
                     to.setReason(se.getMessage());
                 }
 
-                to.setOutput(cleanupOutput(jUnitOutput.getBuffer()));
-                to.setErrorOutput(cleanupOutput(jUnitError.getBuffer()));
+                if (consoleOutput) {
+                    to.setOutput(cleanupOutput(jUnitOutput.getBuffer()));
+                    to.setErrorOutput(cleanupOutput(jUnitError.getBuffer()));
+                } else {
+                    to.setOutput(jUnitOutput.getBuffer().toString().trim());
+                    to.setErrorOutput(jUnitError.getBuffer().toString().trim());
+                }
 
                 log.info("Test case {} {} finished.", test.getTestCase(), test.getName());
                 return to;
@@ -140,6 +164,365 @@ public class TestRunnerService {
         }
     }
 
+    private boolean runForked(Workspace workspace, JMSTestCase test, Languages.JavaVersion javaVersion, Path policy,
+            Duration timeout, LengthLimitedOutputCatcher jUnitOutput, LengthLimitedOutputCatcher jUnitError)
+            throws Exception {
+        AssignmentDescriptor ad = workspace.getAssignmentDescriptor();
+        boolean previewEnabled = ad.getJavaVersion() > 11;
+        List<String> cds = classDataSharingService.testOptions(javaVersion, previewEnabled);
+        List<String> cmd = new ArrayList<>();
+        cmd.add(javaVersion.getRuntime().toString());
+        if (previewEnabled) {
+            cmd.add("--enable-preview");
+        }
+        cmd.addAll(cds);
+        cmd.add("-cp");
+        cmd.add(classDataSharingService.testClasspath(List.of(workspace.getTargetRoot())));
+        cmd.add("-Djava.security.manager");
+        cmd.add("-Djava.security.policy=" + policy.toAbsolutePath());
+        cmd.addAll(resolveSystemProperties(ad));
+        cmd.add("org.junit.runner.JUnitCore");
+
+        // this expects a class name
+        cmd.add(test.getName());
+
+        ProcessResult pr = execute(workspace, label(test), cmd, !cds.isEmpty(), timeout, jUnitOutput, jUnitError,
+                List.of(jUnitOutput, jUnitError));
+        return pr.getExitValue() == 0;
+    }
+
+    /**
+     * Runs the test class once in the bundled runner, the same one the pool uses. It reports the results per test
+     * method and prints no progress markers, so its output needs no clean up.
+     */
+    private boolean runSingle(Workspace workspace, JMSTestCase test, RunnerProfile profile, Duration timeout,
+            TestCaseOutput to, LengthLimitedOutputCatcher jUnitOutput, LengthLimitedOutputCatcher jUnitError)
+            throws Exception {
+        List<String> cmd = testRunnerPool.singleRunCommand(profile, List.of(test.getName()),
+                List.of(workspace.getTargetRoot()), mojServerProperties.getLimits().getTestOutputLimits(), null);
+        ClassRun run = new ClassRun(test, to, jUnitOutput, jUnitError);
+        execute(workspace, label(test), cmd, cds(profile), timeout,
+                new RunnerEventStream(List.of(run), r -> {
+                }), Slf4jStream.of(log).asDebug(), List.of(jUnitOutput, jUnitError));
+        return run.success;
+    }
+
+    /**
+     * @return true if all test classes of an attempt can run in one JVM, see
+     *         {@link #testBatch(Workspace, List, Consumer)}.
+     */
+    public boolean supportsBatch(AssignmentDescriptor ad) {
+        if (!mojServerProperties.getWorker().getTestRunner().isBatchSequential()
+                || ad.getExecutionModel() != ExecutionModel.SEQUENTIAL) {
+            return false;
+        }
+        try {
+            Languages.JavaVersion javaVersion = toolchainService.getJavaVersion(ad.getJavaVersion());
+            return !testRunnerPool.supports(javaVersion)
+                    && javaVersion.getVersion() >= TestRunnerPool.MINIMUM_JAVA_VERSION;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Runs the test classes one after the other in a single JVM of the bundled runner, every class with its own
+     * timeout. A class that does not finish in time or writes too much output stops the JVM, a new one runs the
+     * remaining classes. The whole run has a timeout too, classes not finished by then are timed out.
+     *
+     * @param tested gets every test case as soon as it finished.
+     */
+    public List<TestCaseOutput> testBatch(Workspace workspace, List<JMSTestCase> tests,
+            Consumer<TestCaseOutput> tested) {
+        Limits.OutputLimits limits = mojServerProperties.getLimits().getTestOutputLimits();
+        List<ClassRun> runs = tests.stream()
+                .map(test -> new ClassRun(test, TestCaseOutput.builder()
+                        .testCase(test.getTestCase())
+                        .dateTimeStart(Instant.now())
+                        .build(), new LengthLimitedOutputCatcher(limits), new LengthLimitedOutputCatcher(limits)))
+                .toList();
+        Consumer<ClassRun> finished = run -> {
+            log.info("{} finished.", label(run.test));
+            tested.accept(run.finish());
+        };
+        try {
+            AssignmentDescriptor ad = workspace.getAssignmentDescriptor();
+            Path policy = resolveSecurityPolicy(ad);
+            if (!policy.toFile().exists()) {
+                runs.forEach(run -> finished.accept(run.abort("No security policy defined.")));
+                return runs.stream().map(run -> run.to).toList();
+            }
+            Duration timeout = ad.getTestTimeout() != null ? ad.getTestTimeout()
+                    : mojServerProperties.getLimits().getTestTimeout();
+            RunnerProfile profile = RunnerProfile.builder()
+                    .javaVersion(toolchainService.getJavaVersion(ad.getJavaVersion()))
+                    .policy(policy)
+                    .systemProperties(resolveSystemProperties(ad))
+                    .build();
+
+            int next = 0;
+            while (next < runs.size()) {
+                List<ClassRun> batch = runs.subList(next, runs.size());
+                batch.get(0).to.setDateTimeStart(Instant.now());
+                boolean timedOut = false;
+                String aborted = null;
+                try {
+                    runBatch(workspace, profile, batch, timeout, finished);
+                } catch (TimeoutException e) {
+                    timedOut = true;
+                } catch (OutputLimitExceededException e) {
+                    // the class that wrote too much is the first unfinished one
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    aborted = "Testing interrupted.";
+                }
+                if (cancellationService.isCancelled()) {
+                    aborted = "Testing cancelled.";
+                }
+
+                List<ClassRun> unfinished = batch.stream().filter(run -> !run.finished).toList();
+                if (unfinished.isEmpty()) {
+                    break;
+                }
+                if (timedOut || aborted != null) {
+                    for (ClassRun run : unfinished) {
+                        finished.accept(aborted != null ? run.abort(aborted) : run.timeout(limits));
+                    }
+                    break;
+                }
+                ClassRun run = unfinished.get(0);
+                if (run.timedOut) {
+                    log.info("{} timed out, restarting the runner for the remaining classes.", label(run.test));
+                    finished.accept(run.timeout(limits));
+                } else if (run.out.isLimitExceeded() || run.err.isLimitExceeded()) {
+                    log.info("{} exceeded the output limit, stopped it.", label(run.test));
+                    meterRegistry.counter("moj.worker.process.killed", "reason", "output-limit").increment();
+                    finished.accept(run.outputLimitExceeded(limits));
+                } else {
+                    finished.accept(run.abort("Test runner stopped unexpectedly."));
+                }
+                next = runs.indexOf(run) + 1;
+            }
+        } catch (Exception e) {
+            log.error("Unexpected exception running test cases, aborting", e);
+            runs.stream().filter(run -> !run.finished).forEach(run -> finished.accept(run.abort(e.getMessage())));
+        }
+        return runs.stream().map(run -> run.to).toList();
+    }
+
+    private void runBatch(Workspace workspace, RunnerProfile profile, List<ClassRun> batch, Duration timeout,
+            Consumer<ClassRun> finished) throws Exception {
+        List<String> cmd = testRunnerPool.singleRunCommand(profile, batch.stream().map(run -> run.test.getName())
+                .toList(), List.of(workspace.getTargetRoot()),
+                mojServerProperties.getLimits()
+                        .getTestOutputLimits(),
+                timeout);
+        List<LengthLimitedOutputCatcher> catchers = batch.stream()
+                .flatMap(run -> Stream.of(run.out, run.err))
+                .toList();
+        // the runner times out every class, this is for a runner that hangs itself
+        Duration total = timeout.multipliedBy(batch.size() + 1L);
+        execute(workspace, "Test cases " + batch.stream().map(run -> run.test.getName()).toList(), cmd,
+                cds(profile), total, new RunnerEventStream(batch, finished), Slf4jStream.of(log).asDebug(),
+                catchers);
+    }
+
+    private ProcessResult execute(Workspace workspace, String label, List<String> cmd, boolean cds,
+            Duration timeout, OutputStream out, OutputStream err, List<LengthLimitedOutputCatcher> catchers)
+            throws Exception {
+        // the runner reports it is ready and JUnit prints its version first thing, up to then the JVM was starting
+        PhaseTimer phases = new PhaseTimer(out);
+        // stop the whole process tree as soon as it writes more than allowed, instead of waiting for the timeout
+        AtomicReference<Process> started = new AtomicReference<>();
+        Runnable stop = () -> {
+            Process process = started.get();
+            if (process != null) {
+                process.descendants().forEach(ProcessHandle::destroyForcibly);
+                process.destroyForcibly();
+            }
+        };
+        catchers.forEach(catcher -> catcher.onLimitExceeded(stop));
+        final ProcessResult pr = new ProcessExecutor()
+                .command(cmd)
+                .directory(workspace.getRoot().toFile())
+                .timeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .redirectOutput(phases)
+                .redirectError(err)
+                .addListener(new ProcessListener() {
+                    @Override
+                    public void afterStart(Process process, ProcessExecutor executor) {
+                        started.set(process);
+                        log.info("{} executing: {}", label, process.info()
+                                .commandLine()
+                                .orElse("<none>"));
+                    }
+                })
+                .addListener(cancellationService.processListener())
+                .execute();
+        phases.record(cds);
+        if (catchers.stream().anyMatch(LengthLimitedOutputCatcher::isLimitExceeded)) {
+            throw new OutputLimitExceededException(label + " exceeded the output limit.");
+        }
+        return pr;
+    }
+
+    private boolean cds(RunnerProfile profile) {
+        return !classDataSharingService.testOptions(profile.getJavaVersion(), true).isEmpty();
+    }
+
+    private String label(JMSTestCase test) {
+        return "Test case " + test.getTestCase() + " " + test.getName();
+    }
+
+    /**
+     * A test class run by the bundled runner.
+     */
+    private static class ClassRun {
+
+        private final JMSTestCase test;
+        private final TestCaseOutput to;
+        private final LengthLimitedOutputCatcher out;
+        private final LengthLimitedOutputCatcher err;
+        private boolean success;
+        private boolean timedOut;
+        private boolean finished;
+
+        ClassRun(JMSTestCase test, TestCaseOutput to, LengthLimitedOutputCatcher out,
+                LengthLimitedOutputCatcher err) {
+            this.test = test;
+            this.to = to;
+            this.out = out;
+            this.err = err;
+        }
+
+        TestCaseOutput finish() {
+            finished = true;
+            to.setSuccess(success);
+            to.setDateTimeEnd(Instant.now());
+            to.setOutput(out.getBuffer().toString().trim());
+            to.setErrorOutput(err.getBuffer().toString().trim());
+            return to;
+        }
+
+        ClassRun timeout(Limits.OutputLimits limits) {
+            to.setTimedOut(true);
+            to.setReason("Testing timed out.");
+            out.getBuffer().append('\n').append(limits.getTimeoutMessage());
+            return this;
+        }
+
+        ClassRun outputLimitExceeded(Limits.OutputLimits limits) {
+            to.setAborted(true);
+            to.setReason("Output limit exceeded.");
+            out.getBuffer().append('\n').append(limits.getOutputLimitMessage());
+            return this;
+        }
+
+        ClassRun abort(String reason) {
+            to.setAborted(true);
+            to.setReason(reason);
+            return this;
+        }
+    }
+
+    /**
+     * Passes the output and results the bundled runner sends to the class runs, in the order of the classes.
+     */
+    private static class RunnerEventStream extends LogOutputStream {
+
+        private final List<ClassRun> runs;
+        private final Consumer<ClassRun> finished;
+        private int current;
+
+        RunnerEventStream(List<ClassRun> runs, Consumer<ClassRun> finished) {
+            this.runs = runs;
+            this.finished = finished;
+        }
+
+        @Override
+        protected void processLine(String line) {
+            if (current >= runs.size()) {
+                return;
+            }
+            String[] event = RunnerEvents.parse(line);
+            ClassRun run = runs.get(current);
+            try {
+                switch (event[0]) {
+                    case TestRunner.OUT -> run.out.write(RunnerEvents.data(event));
+                    case TestRunner.ERR -> run.err.write(RunnerEvents.data(event));
+                    case TestRunner.RESULT ->
+                        RunnerEvents.methodResult(event).ifPresent(run.to.getMethodResults()::add);
+                    case TestRunner.DONE -> {
+                        run.out.flush();
+                        run.err.flush();
+                        run.success = "0".equals(RunnerEvents.field(event, 1));
+                        next(run);
+                        finished.accept(run);
+                    }
+                    case TestRunner.TIMEOUT -> run.timedOut = true;
+                    default -> {
+                        // READY, and anything the JVM itself prints
+                    }
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private void next(ClassRun run) {
+            current++;
+            if (current < runs.size()) {
+                runs.get(current).to.setDateTimeStart(Instant.now());
+            }
+        }
+    }
+
+    /**
+     * Records the time until the first output as startup and the remaining time as execution.
+     */
+    private class PhaseTimer extends FilterOutputStream {
+
+        private final long start = System.nanoTime();
+        private long firstOutput;
+
+        PhaseTimer(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            mark();
+            out.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            mark();
+            out.write(b, off, len);
+        }
+
+        private void mark() {
+            if (firstOutput == 0) {
+                firstOutput = System.nanoTime();
+            }
+        }
+
+        void record(boolean cds) {
+            long end = System.nanoTime();
+            long started = firstOutput != 0 ? firstOutput : end;
+            phaseTimer("startup", cds).record(started - start, TimeUnit.NANOSECONDS);
+            phaseTimer("execution", cds).record(end - started, TimeUnit.NANOSECONDS);
+        }
+
+        private Timer phaseTimer(String phase, boolean cds) {
+            return Timer.builder("moj.worker.test.phase")
+                    .tag("phase", phase)
+                    .tag("mode", "forked")
+                    .tag("cds", Boolean.toString(cds))
+                    .register(meterRegistry);
+        }
+    }
+
     private List<String> resolveSystemProperties(AssignmentDescriptor ad) {
         List<String> systemProperties = new ArrayList<>();
         if (ad.getSystemProperties() != null) {
@@ -173,14 +556,6 @@ public class TestRunnerService {
             matcher.appendReplacement(result, "");
         }
         matcher.appendTail(result);
-
-        // strip security manager warnings
-        matcher = WARN_SECURITY_MANAGER.matcher(result);
-        result = new StringBuilder();
-        while (matcher.find()) {
-            matcher.appendReplacement(result, "");
-        }
-        matcher.appendTail(result);
         return result.toString().trim();
     }
 }
@@ -0,0 +1,205 @@
+package nl.moj.worker.java.test.pool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import lombok.Getter;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.worker.java.test.TestMethodOutput;
+import nl.moj.worker.java.test.runner.TestRunner;
+import nl.moj.worker.util.OutputLimitExceededException;
+
+/**
+ * A started {@link TestRunner} JVM, runs one test class at a time.
+ */
+@Slf4j
+class PooledRunner {
+
+    private final Process process;
+    private final PrintStream commands;
+    private final Thread events;
+    private final CompletableFuture<Void> ready = new CompletableFuture<>();
+
+    private volatile Run current;
+    @Getter
+    private int runs = 0;
+    @Getter
+    private volatile Instant idleSince = Instant.now();
+
+    private PooledRunner(Process process) {
+        this.process = process;
+        this.commands = new PrintStream(process.getOutputStream(), true, StandardCharsets.UTF_8);
+        this.events = new Thread(this::readEvents, "test-runner-" + process.pid());
+        this.events.setDaemon(true);
+        this.events.start();
+        Thread errors = new Thread(this::logErrors, "test-runner-" + process.pid() + "-err");
+        errors.setDaemon(true);
+        errors.start();
+    }
+
+    static PooledRunner start(List<String> command, Path directory, Duration startTimeout) throws Exception {
+        Process process = new ProcessBuilder(command).directory(directory.toFile()).start();
+        log.info("Started test runner {}: {}", process.pid(), process.info().commandLine().orElse("<none>"));
+        PooledRunner runner = new PooledRunner(process);
+        try {
+            runner.ready.get(startTimeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (Exception e) {
+            runner.destroy();
+            throw e;
+        }
+        return runner;
+    }
+
+    /**
+     * Runs a test class, sending its output to the given streams and adding the results of its test methods to
+     * the given list.
+     *
+     * @throws TimeoutException if the test did not finish in time, the runner should not be used anymore.
+     */
+    Result run(String className, String classpath, long maxOutputBytes, Duration timeout, OutputStream out,
+            OutputStream err, List<TestMethodOutput> methods) throws IOException, InterruptedException,
+            TimeoutException {
+        Run run = new Run(out, err, methods);
+        current = run;
+        runs++;
+        try {
+            commands.println(String.join(TestRunner.SEPARATOR, TestRunner.RUN, className, classpath,
+                    Long.toString(maxOutputBytes)));
+            if (commands.checkError()) {
+                throw new IOException("Test runner " + process.pid() + " does not accept commands.");
+            }
+            return run.result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OutputLimitExceededException limitExceeded) {
+                throw limitExceeded;
+            }
+            throw new IOException("Test runner " + process.pid() + " failed.", e.getCause());
+        } finally {
+            current = null;
+            idleSince = Instant.now();
+        }
+    }
+
+    /**
+     * Stops waiting for the running test, it fails with the given exception. The runner should not be used anymore.
+     */
+    void abort(IOException reason) {
+        Run run = current;
+        if (run != null) {
+            run.result.completeExceptionally(reason);
+        }
+    }
+
+    boolean isAlive() {
+        return process.isAlive();
+    }
+
+    void destroy() {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+        try {
+            // make sure no more output is written after the runner is gone
+            events.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Stopped test runner {} after {} runs.", process.pid(), runs);
+    }
+
+    private void readEvents() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                handle(RunnerEvents.parse(line));
+            }
+        } catch (IOException e) {
+            log.debug("Reading from test runner {} failed.", process.pid(), e);
+        } finally {
+            IOException stopped = new IOException("Test runner " + process.pid() + " stopped.");
+            ready.completeExceptionally(stopped);
+            Run run = current;
+            if (run != null) {
+                run.result.completeExceptionally(stopped);
+            }
+        }
+    }
+
+    private void handle(String[] event) throws IOException {
+        Run run = current;
+        switch (event[0]) {
+            case TestRunner.READY -> ready.complete(null);
+            case TestRunner.OUT -> {
+                if (run != null) {
+                    run.out.write(RunnerEvents.data(event));
+                }
+            }
+            case TestRunner.ERR -> {
+                if (run != null) {
+                    run.err.write(RunnerEvents.data(event));
+                }
+            }
+            case TestRunner.RESULT -> {
+                if (run != null) {
+                    RunnerEvents.methodResult(event).ifPresent(run.methods::add);
+                }
+            }
+            case TestRunner.DONE -> {
+                if (run != null) {
+                    run.out.flush();
+                    run.err.flush();
+                    run.result.complete(new Result("0".equals(RunnerEvents.field(event, 1)),
+                            "1".equals(RunnerEvents.field(event, 2)), "1".equals(RunnerEvents.field(event, 3))));
+                }
+            }
+            default -> log.warn("Unexpected event from test runner {}: {}", process.pid(), event[0]);
+        }
+    }
+
+    private void logErrors() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                log.debug("Test runner {}: {}", process.pid(), line);
+            }
+        } catch (IOException e) {
+            log.debug("Reading errors from test runner {} failed.", process.pid(), e);
+        }
+    }
+
+    private static class Run {
+
+        private final OutputStream out;
+        private final OutputStream err;
+        private final List<TestMethodOutput> methods;
+        private final CompletableFuture<Result> result = new CompletableFuture<>();
+
+        Run(OutputStream out, OutputStream err, List<TestMethodOutput> methods) {
+            this.out = out;
+            this.err = err;
+            this.methods = methods;
+        }
+    }
+
+    @Value
+    static class Result {
+
+        boolean success;
+        boolean securityViolated;
+        boolean threadsLeftRunning;
+    }
+}
@@ -0,0 +1,72 @@
+package nl.moj.worker.java.test.pool;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.Optional;
+
+import nl.moj.common.messages.JMSTestMethodResult;
+import nl.moj.worker.java.test.TestMethodOutput;
+import nl.moj.worker.java.test.runner.TestRunner;
+
+/**
+ * Parses the events a {@link TestRunner} writes to its standard output, see there for the protocol. Team code runs in
+ * the same process as the runner, so malformed events are skipped instead of failing the run.
+ */
+public final class RunnerEvents {
+
+    private static final byte[] NO_DATA = new byte[0];
+
+    private RunnerEvents() {
+    }
+
+    public static String[] parse(String line) {
+        return line.split(TestRunner.SEPARATOR, -1);
+    }
+
+    /**
+     * @return the field at the given index of the event, or an empty string if the event does not have it.
+     */
+    public static String field(String[] event, int index) {
+        return index < event.length ? event[index] : "";
+    }
+
+    /**
+     * @return the output of an {@code OUT} or {@code ERR} event, or no data if the event is malformed.
+     */
+    public static byte[] data(String[] event) {
+        try {
+            return Base64.getDecoder().decode(field(event, 1));
+        } catch (IllegalArgumentException e) {
+            return NO_DATA;
+        }
+    }
+
+    /**
+     * @return the test method result of a {@code RESULT} event, or nothing if the event is malformed.
+     */
+    public static Optional<TestMethodOutput> methodResult(String[] event) {
+        if (event.length != 6) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(TestMethodOutput.builder()
+                    .name(decode(event[1]))
+                    .status(JMSTestMethodResult.Status.valueOf(event[2]))
+                    .duration(Duration.ofMillis(Long.parseLong(event[3])))
+                    .message(text(event[4]))
+                    .trace(text(event[5]))
+                    .build());
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    private static String text(String data) {
+        return data.isEmpty() ? null : decode(data);
+    }
+
+    private static String decode(String data) {
+        return new String(Base64.getDecoder().decode(data), StandardCharsets.UTF_8);
+    }
+}
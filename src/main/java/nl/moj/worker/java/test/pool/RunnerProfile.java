@@ -0,0 +1,20 @@
+package nl.moj.worker.java.test.pool;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import lombok.Builder;
+import lombok.Value;
+import nl.moj.common.config.properties.Languages;
+
+/**
+ * Everything that is fixed when a runner JVM starts. Runners are only reused for tests with the same profile.
+ */
+@Value
+@Builder
+public class RunnerProfile {
+
+    Languages.JavaVersion javaVersion;
+    Path policy;
+    List<String> systemProperties;
+}
@@ -0,0 +1,295 @@
+package nl.moj.worker.java.test.pool;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.stereotype.Service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.config.properties.Languages;
+import nl.moj.common.config.properties.Limits;
+import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.config.properties.Worker;
+import nl.moj.common.storage.StorageService;
+import nl.moj.server.util.NamedThreadFactory;
+import nl.moj.worker.java.ClassDataSharingService;
+import nl.moj.worker.java.test.TestMethodOutput;
+import nl.moj.worker.java.test.TestRunnerService;
+import nl.moj.worker.java.test.runner.TestRunner;
+import nl.moj.worker.util.LengthLimitedOutputCatcher;
+import nl.moj.worker.util.OutputLimitExceededException;
+
+/**
+ * Keeps started {@link TestRunner} JVMs around per {@link RunnerProfile}, so running a test does not have to wait
+ * for a JVM to start. A runner is replaced after a configured number of runs, when a test times out, when a test
+ * violated the security policy, when it left threads running or when it wrote more output than allowed.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TestRunnerPool {
+
+    public static final int MINIMUM_JAVA_VERSION = 17;
+
+    private static final Duration START_TIMEOUT = Duration.ofSeconds(30);
+
+    private final MojServerProperties mojServerProperties;
+    private final StorageService storageService;
+    private final ClassDataSharingService classDataSharingService;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<RunnerProfile, Pool> pools = new ConcurrentHashMap<>();
+    private final ExecutorService starter = Executors.newCachedThreadPool(new NamedThreadFactory("test-runner"));
+    private final ScheduledExecutorService reaper = Executors.newSingleThreadScheduledExecutor(
+            new NamedThreadFactory("test-runner-reaper"));
+
+    @PostConstruct
+    public void init() {
+        reaper.scheduleWithFixedDelay(this::stopIdleRunners, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reaper.shutdownNow();
+        starter.shutdownNow();
+        pools.values().forEach(Pool::clear);
+    }
+
+    public boolean supports(Languages.JavaVersion javaVersion) {
+        return getSettings().getMode() == Worker.TestRunnerMode.POOLED
+                && javaVersion.getVersion() >= MINIMUM_JAVA_VERSION;
+    }
+
+    /**
+     * Starts runners for all configured Java versions using the default security policy, so the first tests do not
+     * have to wait for them.
+     */
+    public void warmUp() {
+        if (getSettings().getMode() != Worker.TestRunnerMode.POOLED) {
+            return;
+        }
+        Path policy = storageService.getLibsFolder().resolve(TestRunnerService.SECURITY_POLICY_FOR_UNIT_TESTS);
+        mojServerProperties.getLanguages().getJavaVersions().stream()
+                .filter(jv -> jv.getVersion() >= MINIMUM_JAVA_VERSION && Files.isExecutable(jv.getRuntime()))
+                .forEach(jv -> {
+                    RunnerProfile profile = RunnerProfile.builder()
+                            .javaVersion(jv)
+                            .policy(policy)
+                            .systemProperties(List.of())
+                            .build();
+                    Pool pool = pools.computeIfAbsent(profile, Pool::new);
+                    pool.permanent = true;
+                    pool.fill();
+                });
+    }
+
+    /**
+     * Runs a test class in a runner with the given profile, adding the results of its test methods to the given
+     * list.
+     *
+     * @return true if all tests in the class succeeded.
+     * @throws TimeoutException if the tests did not finish in time.
+     * @throws OutputLimitExceededException if the tests wrote more output than allowed.
+     */
+    public boolean run(RunnerProfile profile, String className, List<Path> classpath, Duration timeout,
+            Limits.OutputLimits outputLimits, LengthLimitedOutputCatcher out, LengthLimitedOutputCatcher err,
+            List<TestMethodOutput> methods) throws Exception {
+        Pool pool = pools.computeIfAbsent(profile, Pool::new);
+        PooledRunner runner = pool.acquire();
+        boolean reusable = false;
+        Runnable abort = () -> runner.abort(new OutputLimitExceededException(
+                "Test " + className + " exceeded the output limit."));
+        out.onLimitExceeded(abort);
+        err.onLimitExceeded(abort);
+        try {
+            PooledRunner.Result result = runner.run(className, toClasspath(classpath), maxOutputBytes(outputLimits),
+                    timeout, out, err, methods);
+            if (result.isSecurityViolated()) {
+                log.info("Test {} violated the security policy, replacing its runner.", className);
+            }
+            if (result.isThreadsLeftRunning()) {
+                log.info("Test {} left threads running, replacing its runner.", className);
+            }
+            reusable = !result.isSecurityViolated() && !result.isThreadsLeftRunning()
+                    && runner.getRuns() < getSettings().getMaxRuns();
+            return result.isSuccess();
+        } finally {
+            if (reusable) {
+                pool.release(runner);
+            } else {
+                runner.destroy();
+                pool.fill();
+            }
+        }
+    }
+
+    /**
+     * @return the command for a runner with the given profile that runs the test classes once, one after the other,
+     *         and exits. It sends the same events as a pooled runner. With a timeout per class it stops after the
+     *         first class that did not finish in time.
+     */
+    public List<String> singleRunCommand(RunnerProfile profile, List<String> classNames, List<Path> classpath,
+            Limits.OutputLimits outputLimits, Duration timeoutPerClass) throws Exception {
+        List<String> cmd = command(profile, classDataSharingService.testOptions(profile.getJavaVersion(), true));
+        cmd.add(String.join(TestRunner.CLASS_SEPARATOR, classNames));
+        cmd.add(toClasspath(classpath));
+        cmd.add(Long.toString(maxOutputBytes(outputLimits)));
+        if (timeoutPerClass != null) {
+            cmd.add(Long.toString(timeoutPerClass.toMillis()));
+        }
+        return cmd;
+    }
+
+    private PooledRunner start(RunnerProfile profile) throws Exception {
+        List<String> cds = classDataSharingService.testOptions(profile.getJavaVersion(), true);
+        long start = System.nanoTime();
+        PooledRunner runner = PooledRunner.start(command(profile, cds), storageService.getLibsFolder(),
+                START_TIMEOUT);
+        Timer.builder("moj.worker.test.phase")
+                .tag("phase", "startup")
+                .tag("mode", "pooled")
+                .tag("cds", Boolean.toString(!cds.isEmpty()))
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return runner;
+    }
+
+    private List<String> command(RunnerProfile profile, List<String> cds) throws Exception {
+        List<String> cmd = new ArrayList<>();
+        cmd.add(profile.getJavaVersion().getRuntime().toString());
+        cmd.add("--enable-preview");
+        cmd.addAll(cds);
+        cmd.add("-Djava.security.manager=allow");
+        cmd.add("-Djava.security.policy=" + profile.getPolicy().toAbsolutePath());
+        cmd.addAll(profile.getSystemProperties());
+        cmd.add("-cp");
+        cmd.add(classDataSharingService.testClasspath(List.of()));
+        cmd.add(TestRunner.class.getName());
+        return cmd;
+    }
+
+    private void stopIdleRunners() {
+        Instant before = Instant.now().minus(getSettings().getIdleTimeout());
+        pools.forEach((profile, pool) -> {
+            if (pool.permanent) {
+                pool.stopIdleSince(Instant.MIN);
+                pool.fill();
+            } else {
+                pool.stopIdleSince(before);
+                if (pool.isEmpty()) {
+                    pools.remove(profile, pool);
+                }
+            }
+        });
+    }
+
+    private String toClasspath(List<Path> classpath) {
+        return classpath.stream().map(p -> p.toAbsolutePath().toString())
+                .collect(Collectors.joining(File.pathSeparator));
+    }
+
+    private long maxOutputBytes(Limits.OutputLimits outputLimits) {
+        // one byte more than allowed, so the catcher notices the limit was exceeded and the runner is replaced
+        return outputLimits.getMaxOutputBytes() + 1;
+    }
+
+    private Worker.TestRunner getSettings() {
+        return mojServerProperties.getWorker().getTestRunner();
+    }
+
+    private class Pool {
+
+        private final RunnerProfile profile;
+        private final BlockingDeque<PooledRunner> idle = new LinkedBlockingDeque<>();
+        private final AtomicInteger starting = new AtomicInteger();
+        private volatile boolean permanent = false;
+
+        Pool(RunnerProfile profile) {
+            this.profile = profile;
+        }
+
+        PooledRunner acquire() throws Exception {
+            PooledRunner runner;
+            while ((runner = idle.pollFirst()) != null) {
+                if (runner.isAlive()) {
+                    return runner;
+                }
+                runner.destroy();
+            }
+            // ran dry, start a runner for this test and refill the pool for the next ones
+            fill();
+            return start(profile);
+        }
+
+        void release(PooledRunner runner) {
+            if (idle.size() < getSettings().getPoolSize()) {
+                // most recently used first, it is the warmest
+                idle.offerFirst(runner);
+            } else {
+                runner.destroy();
+            }
+        }
+
+        void fill() {
+            int missing = getSettings().getPoolSize() - idle.size() - starting.get();
+            for (int i = 0; i < missing; i++) {
+                starting.incrementAndGet();
+                starter.execute(() -> {
+                    try {
+                        idle.offerLast(start(profile));
+                    } catch (Exception e) {
+                        log.warn("Unable to start test runner.", e);
+                    } finally {
+                        starting.decrementAndGet();
+                    }
+                });
+            }
+        }
+
+        /**
+         * Stops runners idle since before the given instant, and runners that died.
+         */
+        void stopIdleSince(Instant before) {
+            idle.removeIf(runner -> {
+                if (runner.getIdleSince().isBefore(before) || !runner.isAlive()) {
+                    runner.destroy();
+                    return true;
+                }
+                return false;
+            });
+        }
+
+        boolean isEmpty() {
+            return idle.isEmpty() && starting.get() == 0;
+        }
+
+        void clear() {
+            PooledRunner runner;
+            while ((runner = idle.pollFirst()) != null) {
+                runner.destroy();
+            }
+        }
+    }
+}
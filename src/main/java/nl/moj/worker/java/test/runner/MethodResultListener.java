@@ -0,0 +1,96 @@
+package nl.moj.worker.java.test.runner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.function.Consumer;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Sends the result of every test method to the worker as a {@link TestRunner#RESULT} event. Failures outside of a
+ * test method, like a failing {@code @BeforeClass}, are sent as a failed result named after the class.
+ */
+class MethodResultListener extends RunListener {
+
+    static final String SUCCESS = "SUCCESS";
+    static final String FAILURE = "FAILURE";
+    static final String SKIPPED = "SKIPPED";
+
+    private static final int MAX_TRACE_LINES = 20;
+
+    private final Consumer<String> events;
+
+    private Description current;
+    private long started;
+    private String status;
+    private Failure failure;
+
+    MethodResultListener(Consumer<String> events) {
+        this.events = events;
+    }
+
+    @Override
+    public void testStarted(Description description) {
+        current = description;
+        started = System.nanoTime();
+        status = SUCCESS;
+        failure = null;
+    }
+
+    @Override
+    public void testFailure(Failure failure) {
+        if (current == null) {
+            send(failure.getDescription(), FAILURE, 0, failure);
+        } else {
+            this.status = FAILURE;
+            this.failure = failure;
+        }
+    }
+
+    @Override
+    public void testAssumptionFailure(Failure failure) {
+        if (current != null) {
+            this.status = SKIPPED;
+            this.failure = failure;
+        }
+    }
+
+    @Override
+    public void testIgnored(Description description) {
+        send(description, SKIPPED, 0, null);
+    }
+
+    @Override
+    public void testFinished(Description description) {
+        send(description, status, (System.nanoTime() - started) / 1_000_000, failure);
+        current = null;
+    }
+
+    private void send(Description description, String status, long millis, Failure failure) {
+        String name = description.getMethodName() != null ? description.getMethodName()
+                : description.getDisplayName();
+        String message = failure != null && failure.getMessage() != null ? failure.getMessage() : "";
+        String trace = failure != null ? truncate(failure.getTrace()) : "";
+        // display names may contain any text, like the parameters of a parameterized test
+        events.accept(String.join(TestRunner.SEPARATOR, TestRunner.RESULT, encode(name), status,
+                Long.toString(millis), encode(message), encode(trace)));
+    }
+
+    private static String truncate(String trace) {
+        String[] lines = trace.split("\\R");
+        if (lines.length <= MAX_TRACE_LINES) {
+            return trace;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < MAX_TRACE_LINES; i++) {
+            sb.append(lines[i]).append('\n');
+        }
+        return sb.append("\t... ").append(lines.length - MAX_TRACE_LINES).append(" more").toString();
+    }
+
+    private static String encode(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
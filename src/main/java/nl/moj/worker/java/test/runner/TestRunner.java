@@ -0,0 +1,352 @@
+package nl.moj.worker.java.test.runner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.security.CodeSource;
+import java.security.Permission;
+import java.security.PermissionCollection;
+import java.security.Policy;
+import java.security.ProtectionDomain;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Set;
+
+import org.junit.internal.TextListener;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+
+/**
+ * Long-lived JUnit runner, started by the worker in a separate sandboxed JVM and reused for many test runs. Every
+ * run loads the test class in a new class loader, so runs do not share any state of team code.
+ * <p>
+ * This class runs outside the worker, it must only depend on the JDK and JUnit. It talks to the worker over its
+ * standard input and output, one tab separated command per line:
+ * <ul>
+ * <li>runner: {@code READY} once the sandbox is set up;</li>
+ * <li>worker: {@code RUN <class name> <class path> <max output bytes>};</li>
+ * <li>runner: {@code OUT <base64 data>} and {@code ERR <base64 data>} for output of the test;</li>
+ * <li>runner: {@code RESULT <base64 method> <SUCCESS|FAILURE|SKIPPED> <duration in ms> <base64 message> <base64 trace>}
+ * for every test method;</li>
+ * <li>runner: {@code DONE <0 if successful, 1 otherwise> <1 if the security policy was violated, 0 otherwise>
+ * <1 if the run left threads running, 0 otherwise>}.</li>
+ * </ul>
+ * The output of a run is the summary {@link JUnitCore} prints on the command line, without the progress markers.
+ * <p>
+ * Started with the arguments of a {@code RUN} command it runs that test class once, sending the same events, and
+ * exits with 0 if it was successful. The class name may also be a comma separated list of classes to run one after
+ * the other, followed by a timeout in milliseconds per class. A class that does not finish in time gets a
+ * {@code TIMEOUT} event instead of {@code DONE} and the runner exits right after it, its threads may never stop.
+ */
+@SuppressWarnings("removal")
+public class TestRunner {
+
+    public static final String READY = "READY";
+    public static final String RUN = "RUN";
+    public static final String OUT = "OUT";
+    public static final String ERR = "ERR";
+    public static final String RESULT = "RESULT";
+    public static final String DONE = "DONE";
+    public static final String TIMEOUT = "TIMEOUT";
+    public static final String CLASS_SEPARATOR = ",";
+    public static final String SEPARATOR = "\t";
+
+    // time threads started by a test get to finish after the test itself finished
+    private static final long THREAD_GRACE_MILLIS = 200;
+
+    private final PrintStream protocol;
+    private final CapturingOutputStream out;
+    private final CapturingOutputStream err;
+    private final RecordingSecurityManager securityManager;
+
+    private TestRunner(PrintStream protocol) {
+        this.protocol = protocol;
+        this.out = new CapturingOutputStream(OUT);
+        this.err = new CapturingOutputStream(ERR);
+        this.securityManager = new RecordingSecurityManager();
+    }
+
+    public static void main(String[] args) throws Exception {
+        PrintStream protocol = new PrintStream(new FileOutputStream(FileDescriptor.out), true,
+                StandardCharsets.UTF_8);
+        BufferedReader commands = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+
+        TestRunner runner = new TestRunner(protocol);
+        runner.install();
+        protocol.println(READY);
+
+        if (args.length == 3 || args.length == 4) {
+            long timeout = args.length == 4 ? Long.parseLong(args[3]) : 0;
+            // exit, threads the tests left behind must not keep the JVM alive
+            boolean success = runner.runAll(args[0].split(CLASS_SEPARATOR), args[1], Long.parseLong(args[2]),
+                    timeout);
+            System.exit(success ? 0 : 1);
+        }
+
+        String line;
+        while ((line = commands.readLine()) != null) {
+            String[] command = line.split(SEPARATOR);
+            if (RUN.equals(command[0]) && command.length == 4) {
+                runner.run(command[1], command[2], Long.parseLong(command[3]));
+            } else {
+                protocol.println(DONE + SEPARATOR + "1" + SEPARATOR + "0" + SEPARATOR + "0");
+            }
+        }
+    }
+
+    private void install() {
+        System.setIn(InputStream.nullInputStream());
+        System.setOut(new PrintStream(out, true, StandardCharsets.UTF_8));
+        System.setErr(new PrintStream(err, true, StandardCharsets.UTF_8));
+
+        // the runner itself needs to create class loaders and write to the worker, test code may only do
+        // what the configured policy allows
+        Policy.setPolicy(new RunnerPolicy(Policy.getPolicy(),
+                TestRunner.class.getProtectionDomain().getCodeSource()));
+        System.setSecurityManager(securityManager);
+    }
+
+    private boolean runAll(String[] classNames, String classpath, long maxOutputBytes, long timeoutMillis)
+            throws InterruptedException {
+        if (timeoutMillis <= 0) {
+            boolean success = true;
+            for (String className : classNames) {
+                success &= run(className, classpath, maxOutputBytes);
+            }
+            return success;
+        }
+        boolean[] success = { true };
+        for (String className : classNames) {
+            Thread test = new Thread(() -> success[0] &= run(className, classpath, maxOutputBytes),
+                    "test-" + className);
+            test.setDaemon(true);
+            test.start();
+            test.join(timeoutMillis);
+            if (test.isAlive()) {
+                send(TIMEOUT);
+                // halt, shutdown hooks of the test must not keep it from stopping
+                Runtime.getRuntime().halt(1);
+            }
+        }
+        return success[0];
+    }
+
+    private boolean run(String className, String classpath, long maxOutputBytes) {
+        Set<Thread> baseline = Thread.getAllStackTraces().keySet();
+        securityManager.reset();
+        out.start(maxOutputBytes);
+        err.start(maxOutputBytes);
+        boolean success = false;
+        ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+        try (URLClassLoader classLoader = new URLClassLoader(toUrls(classpath), TestRunner.class.getClassLoader())) {
+            Thread.currentThread().setContextClassLoader(classLoader);
+            success = runJUnit(className, classLoader);
+        } catch (Throwable e) {
+            e.printStackTrace(System.err);
+        } finally {
+            Thread.currentThread().setContextClassLoader(contextClassLoader);
+            System.out.flush();
+            System.err.flush();
+            out.stop();
+            err.stop();
+        }
+        boolean threadsLeft = leftRunning(baseline);
+        send(DONE + SEPARATOR + (success ? "0" : "1") + SEPARATOR + (securityManager.isViolated() ? "1" : "0")
+                + SEPARATOR + (threadsLeft ? "1" : "0"));
+        return success;
+    }
+
+    /**
+     * @return true if threads started during the run are still alive after a short grace period. They would write
+     *         into and compete with the runs that follow, so the worker must not reuse this JVM.
+     */
+    private static boolean leftRunning(Set<Thread> baseline) {
+        long deadline = System.currentTimeMillis() + THREAD_GRACE_MILLIS;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!baseline.contains(thread) && thread != Thread.currentThread()) {
+                try {
+                    thread.join(Math.max(1, deadline - System.currentTimeMillis()));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return true;
+                }
+                if (thread.isAlive()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void send(String event) {
+        synchronized (protocol) {
+            protocol.println(event);
+        }
+    }
+
+    private boolean runJUnit(String className, ClassLoader classLoader) {
+        JUnitCore core = new JUnitCore();
+        Class<?> testClass;
+        try {
+            testClass = Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            System.out.println("Could not find class: " + className);
+            return false;
+        }
+        core.addListener(new SummaryListener(System.out));
+        core.addListener(new MethodResultListener(this::send));
+        Result result = core.run(testClass);
+        return result.wasSuccessful();
+    }
+
+    private static URL[] toUrls(String classpath) throws Exception {
+        String[] entries = classpath.split(File.pathSeparator);
+        URL[] urls = new URL[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            urls[i] = new File(entries[i]).toURI().toURL();
+        }
+        return urls;
+    }
+
+    /**
+     * Sends everything written to it to the worker, up to a maximum number of bytes per run. Output written
+     * outside of a run, for example by threads a previous test left behind, is dropped.
+     */
+    private class CapturingOutputStream extends OutputStream {
+
+        private final String type;
+        private long remaining = 0;
+
+        CapturingOutputStream(String type) {
+            this.type = type;
+        }
+
+        synchronized void start(long maxBytes) {
+            remaining = maxBytes;
+        }
+
+        synchronized void stop() {
+            remaining = 0;
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            int length = (int) Math.min(len, remaining);
+            if (length > 0) {
+                remaining -= length;
+                send(type + SEPARATOR + Base64.getEncoder().encodeToString(Arrays.copyOfRange(b, off, off + length)));
+            }
+        }
+    }
+
+    /**
+     * Prints what {@link TextListener} prints, except for the markers per test, the worker gets those as results.
+     */
+    private static class SummaryListener extends TextListener {
+
+        SummaryListener(PrintStream writer) {
+            super(writer);
+        }
+
+        @Override
+        public void testStarted(Description description) {
+        }
+
+        @Override
+        public void testFailure(Failure failure) {
+        }
+
+        @Override
+        public void testIgnored(Description description) {
+        }
+    }
+
+    /**
+     * Grants the runner itself all permissions, everything else is delegated to the configured policy.
+     */
+    private static class RunnerPolicy extends Policy {
+
+        private final Policy delegate;
+        private final CodeSource runner;
+
+        RunnerPolicy(Policy delegate, CodeSource runner) {
+            this.delegate = delegate;
+            this.runner = runner;
+        }
+
+        @Override
+        public PermissionCollection getPermissions(CodeSource codesource) {
+            return delegate.getPermissions(codesource);
+        }
+
+        @Override
+        public PermissionCollection getPermissions(ProtectionDomain domain) {
+            return delegate.getPermissions(domain);
+        }
+
+        @Override
+        public boolean implies(ProtectionDomain domain, Permission permission) {
+            if (domain != null && domain.getCodeSource() != null
+                    && runner.getLocation().equals(domain.getCodeSource().getLocation())) {
+                return true;
+            }
+            return delegate.implies(domain, permission);
+        }
+
+        @Override
+        public void refresh() {
+            delegate.refresh();
+        }
+    }
+
+    /**
+     * Remembers whether any permission was denied, after which the worker will not reuse this JVM.
+     */
+    private static class RecordingSecurityManager extends SecurityManager {
+
+        private volatile boolean violated = false;
+
+        void reset() {
+            violated = false;
+        }
+
+        boolean isViolated() {
+            return violated;
+        }
+
+        @Override
+        public void checkPermission(Permission perm) {
+            try {
+                super.checkPermission(perm);
+            } catch (SecurityException e) {
+                violated = true;
+                throw e;
+            }
+        }
+
+        @Override
+        public void checkPermission(Permission perm, Object context) {
+            try {
+                super.checkPermission(perm, context);
+            } catch (SecurityException e) {
+                violated = true;
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package nl.moj.worker.java.test.runner;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * A representative test, run to find the classes loaded by a test JVM when generating a class data sharing archive.
+ */
+public class WarmupTest {
+
+    private List<String> values;
+
+    @Before
+    public void setUp() {
+        values = new ArrayList<>(List.of("masters", "of", "java"));
+    }
+
+    @Test
+    public void assertions() {
+        Assert.assertEquals(3, values.size());
+        Assert.assertTrue(values.contains("java"));
+        Assert.assertNotNull(values.get(0));
+        Assert.assertArrayEquals(new String[] { "masters" }, values.subList(0, 1).toArray());
+    }
+
+    @Test
+    public void matchers() {
+        Assert.assertThat(String.join(" ", values), containsString("of"));
+        Assert.assertThat(values.size(), is(3));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void expectedException() {
+        throw new IllegalStateException("expected");
+    }
+}
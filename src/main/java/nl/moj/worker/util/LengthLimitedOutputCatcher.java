@@ -18,6 +18,8 @@ package nl.moj.worker.util;
 
 import static java.lang.Math.min;
 
+import java.io.IOException;
+
 import org.zeroturnaround.exec.stream.LogOutputStream;
 
 import nl.moj.common.config.properties.Limits;
@@ -26,6 +28,10 @@ import nl.moj.common.config.properties.Limits;
  * Support class to capture a limited shard of potentially huge output. The
  * output is limited to a maximum number of lines, a maximum number of chars per
  * line, and a total maximum number of characters.
+ * <p>
+ * Output beyond the maximum number of bytes is dropped without decoding it, the
+ * listener set with {@link #onLimitExceeded(Runnable)} is told once so it can stop
+ * the process writing it.
  *
  * @author hartmut
  */
@@ -36,7 +42,14 @@ public class LengthLimitedOutputCatcher extends LogOutputStream {
     private final int maxLineLenght;
     private final String lineTruncatedMessage;
     private final String outputTruncMessage;
+    private final long maxBytes;
     private int lineCount = 0;
+    private long byteCount = 0;
+    // LogOutputStream writes line separators of a bulk write one by one, those are counted already
+    private boolean bulkWrite;
+    private volatile boolean limitExceeded;
+    private volatile Runnable limitListener = () -> {
+    };
 
     public LengthLimitedOutputCatcher(Limits.OutputLimits limits) {
         this.maxSize = limits.getMaxChars();
@@ -44,6 +57,55 @@ public class LengthLimitedOutputCatcher extends LogOutputStream {
         this.maxLineLenght = limits.getMaxLineLen();
         this.lineTruncatedMessage = limits.getLineTruncatedMessage();
         this.outputTruncMessage = limits.getOutputTruncMessage();
+        this.maxBytes = limits.getMaxOutputBytes() != null ? limits.getMaxOutputBytes() : Long.MAX_VALUE;
+    }
+
+    /**
+     * Sets the listener to run, on the writing thread, when the output exceeds the maximum number of bytes.
+     */
+    public void onLimitExceeded(Runnable listener) {
+        this.limitListener = listener;
+        if (limitExceeded) {
+            listener.run();
+        }
+    }
+
+    public boolean isLimitExceeded() {
+        return limitExceeded;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (bulkWrite || accept(1) > 0) {
+            super.write(b);
+        }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int accepted = accept(len);
+        if (accepted > 0) {
+            bulkWrite = true;
+            try {
+                super.write(b, off, accepted);
+            } finally {
+                bulkWrite = false;
+            }
+        }
+    }
+
+    // the number of bytes that still fit, the first time they do not the listener is told
+    private int accept(int len) {
+        if (limitExceeded) {
+            return 0;
+        }
+        int accepted = (int) min(len, maxBytes - byteCount);
+        byteCount += accepted;
+        if (accepted < len) {
+            limitExceeded = true;
+            limitListener.run();
+        }
+        return accepted;
     }
 
     @Override
@@ -0,0 +1,13 @@
+package nl.moj.worker.util;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a process wrote more output than allowed and was stopped for it.
+ */
+public class OutputLimitExceededException extends IOException {
+
+    public OutputLimitExceededException(String message) {
+        super(message);
+    }
+}
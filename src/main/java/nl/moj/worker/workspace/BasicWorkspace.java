@@ -8,34 +8,79 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Stream;
 
+import com.github.difflib.patch.PatchFailedException;
+
 import nl.moj.common.assignment.descriptor.*;
 import nl.moj.common.messages.JMSFile;
+import nl.moj.common.util.SourceDiffUtils;
 
 public class BasicWorkspace implements Workspace {
 
     private final Path base;
     private final Path sources;
     private final Path target;
+    private final UUID assignment;
     private final AssignmentDescriptor assignmentDescriptor;
+    private final Set<Path> replacedSources = new HashSet<>();
+
+    public BasicWorkspace(UUID assignment, AssignmentDescriptor assignmentDescriptor, List<JMSFile> replacements)
+            throws IOException {
+        this(Files.createTempDirectory("workspace"), assignment, assignmentDescriptor, null, replacements);
+    }
 
-    public BasicWorkspace(AssignmentDescriptor assignmentDescriptor, List<JMSFile> replacements) throws IOException {
-        this.base = Files.createTempDirectory("workspace");
+    /**
+     * Creates a workspace in the given base directory. If a template is given, the workspace is materialized by
+     * linking all files of the template instead of importing the files of the assignment.
+     */
+    public BasicWorkspace(Path base, UUID assignment, AssignmentDescriptor assignmentDescriptor, Path template,
+            List<JMSFile> replacements) throws IOException {
+        this.base = base;
         this.sources = this.base.resolve("sources");
         this.target = this.base.resolve("target");
+        this.assignment = assignment;
         this.assignmentDescriptor = assignmentDescriptor;
         Files.createDirectories(sources);
         Files.createDirectories(target);
-        prepare();
+        if (template != null) {
+            link(template);
+        } else {
+            prepare();
+        }
         if (replacements != null && !replacements.isEmpty()) {
             replaceFiles(replacements);
         }
     }
 
+    private void link(Path template) throws IOException {
+        boolean linkSupported = true;
+        try (Stream<Path> walk = Files.walk(template)) {
+            for (Path p : walk.toList()) {
+                Path tp = base.resolve(template.relativize(p).toString());
+                if (Files.isDirectory(p)) {
+                    Files.createDirectories(tp);
+                    continue;
+                }
+                if (linkSupported) {
+                    try {
+                        Files.createLink(tp, p);
+                        continue;
+                    } catch (IOException | UnsupportedOperationException e) {
+                        // e.g. the template is on another file system
+                        linkSupported = false;
+                    }
+                }
+                Files.copy(p, tp);
+            }
+        }
+    }
+
     public void prepare() throws IOException {
         AssignmentFiles files = assignmentDescriptor.getAssignmentFiles();
         Sources sources = files.getSources();
@@ -104,7 +149,9 @@ public class BasicWorkspace implements Workspace {
         if (tp.getParent() != null) {
             Files.createDirectories(tp.getParent());
         }
-        Files.copy(data, tp, StandardCopyOption.REPLACE_EXISTING);
+        // never write through a link to the template, replace the link itself
+        Files.deleteIfExists(tp);
+        Files.copy(data, tp);
     }
 
     public void importSourceFile(Path src, Path dest) throws IOException {
@@ -121,14 +168,16 @@ public class BasicWorkspace implements Workspace {
         if (tp.getParent() != null) {
             Files.createDirectories(tp.getParent());
         }
-        Files.copy(data, tp, StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(tp);
+        Files.copy(data, tp);
     }
 
     public void replaceFiles(List<JMSFile> files) throws IOException {
         for (JMSFile file : files) {
             if (file.getType() == JMSFile.Type.SOURCE) {
-                importSourceFile(new ByteArrayInputStream(file.getContent()
+                importSourceFile(new ByteArrayInputStream(sourceContent(file)
                         .getBytes(StandardCharsets.UTF_8)), Paths.get(file.getPath()));
+                replacedSources.add(Paths.get(file.getPath()).normalize());
             }
             if (file.getType() == JMSFile.Type.RESOURCE) {
                 importResourceFile(new ByteArrayInputStream(file.getContent()
@@ -137,6 +186,19 @@ public class BasicWorkspace implements Workspace {
         }
     }
 
+    // a diff is against the original source, which is in the workspace until it is replaced
+    private String sourceContent(JMSFile file) throws IOException {
+        if (!file.isDiff()) {
+            return file.getContent();
+        }
+        Path original = sources.resolve(file.getPath());
+        try {
+            return SourceDiffUtils.content(file, Files.exists(original) ? Files.readString(original) : "");
+        } catch (PatchFailedException e) {
+            throw new IOException("Unable to restore source " + file.getPath() + ": " + e.getMessage(), e);
+        }
+    }
+
     public Stream<Path> getSources() throws IOException {
         return Files.walk(sources);
     }
@@ -161,6 +223,14 @@ public class BasicWorkspace implements Workspace {
         return target;
     }
 
+    public Set<Path> getReplacedSources() {
+        return replacedSources;
+    }
+
+    public UUID getAssignment() {
+        return assignment;
+    }
+
     public AssignmentDescriptor getAssignmentDescriptor() {
         return assignmentDescriptor;
     }
@@ -2,16 +2,25 @@ package nl.moj.worker.workspace;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Stream;
 
 import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
 
 public interface Workspace extends AutoCloseable {
 
+    UUID getAssignment();
+
     AssignmentDescriptor getAssignmentDescriptor();
 
     Stream<Path> getSources() throws IOException;
 
+    /**
+     * @return the paths, relative to the sources root, of the sources replaced by the files of the team.
+     */
+    Set<Path> getReplacedSources();
+
     Path getRoot();
 
     Path getSourcesRoot();
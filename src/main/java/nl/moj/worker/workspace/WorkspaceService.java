@@ -1,21 +1,336 @@
 package nl.moj.worker.workspace;
 
 import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 
 import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
 
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
+import nl.moj.common.config.properties.MojServerProperties;
 import nl.moj.common.messages.JMSFile;
 
 @Service
+@RequiredArgsConstructor
 @Slf4j
-@AllArgsConstructor
 public class WorkspaceService {
 
-    public Workspace getWorkspace(AssignmentDescriptor ad, List<JMSFile> replacements) throws IOException {
-        return new BasicWorkspace(ad, replacements);
+    private static final String PRIMARY = "primary";
+    private static final String FALLBACK = "fallback";
+
+    private final MojServerProperties mojServerProperties;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<UUID, Template> templates = new ConcurrentHashMap<>();
+    private final Map<UUID, CompletableFuture<Template>> creating = new ConcurrentHashMap<>();
+    private final Map<Path, Lease> leases = new ConcurrentHashMap<>();
+    private final AtomicLong used = new AtomicLong();
+    private final AtomicLong templateBytes = new AtomicLong();
+
+    private Path root;
+    private Path fallbackRoot;
+    private Path templatesRoot;
+    private Counter fallbacks;
+
+    @PostConstruct
+    public void init() throws IOException {
+        var settings = mojServerProperties.getWorker().getWorkspace();
+        Path tmp = Path.of(System.getProperty("java.io.tmpdir"));
+        root = validate(settings.getDirectory() != null ? settings.getDirectory() : tmp);
+        fallbackRoot = validate(settings.getFallbackDirectory() != null ? settings.getFallbackDirectory() : tmp);
+
+        FileStore store = Files.getFileStore(root);
+        log.info("Creating workspaces in {} ({}, {}MB usable){}.", root, store.type(),
+                DataSize.ofBytes(store.getUsableSpace()).toMegabytes(),
+                settings.getQuota() != null ? ", quota " + settings.getQuota() : "");
+        if (settings.getQuota() != null && settings.getQuota().toBytes() > store.getUsableSpace()) {
+            log.warn("Workspace quota of {} is larger than the usable space in {}.", settings.getQuota(), root);
+        }
+
+        fallbacks = Counter.builder("moj.worker.workspace.fallback").register(meterRegistry);
+        Gauge.builder("moj.worker.workspace.used", used, AtomicLong::get).baseUnit("bytes")
+                .register(meterRegistry);
+        // part of the used bytes, on a tmpfs this is memory held until a template is replaced
+        Gauge.builder("moj.worker.workspace.templates", templateBytes, AtomicLong::get).baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Creates a workspace by linking the files of the template of the assignment, only the replacements of the team
+     * are actually written.
+     */
+    public Workspace getWorkspace(UUID assignment, AssignmentDescriptor ad, List<JMSFile> replacements)
+            throws IOException {
+        Template template = getTemplate(assignment, ad);
+        try {
+            return createWorkspace(assignment, ad, replacements, template);
+        } finally {
+            // the workspace links the files, it no longer needs the template itself
+            release(template);
+        }
+    }
+
+    private Workspace createWorkspace(UUID assignment, AssignmentDescriptor ad, List<JMSFile> replacements,
+            Template template) throws IOException {
+        Lease lease = reserve(template);
+        Path base = null;
+        try {
+            base = Files.createTempDirectory(lease.root(), "workspace");
+            leases.put(base, lease);
+            return new BasicWorkspace(base, assignment, ad, template.root(), replacements);
+        } catch (IOException e) {
+            release(base, lease);
+            if (lease.root().equals(fallbackRoot)) {
+                throw e;
+            }
+            // most likely out of space
+            log.warn("Unable to create workspace in {}, falling back to {}.", root, fallbackRoot, e);
+            fallbacks.increment();
+            base = Files.createTempDirectory(fallbackRoot, "workspace");
+            leases.put(base, new Lease(fallbackRoot, template, 0));
+            return new BasicWorkspace(base, assignment, ad, template.root(), replacements);
+        }
+    }
+
+    /**
+     * Closes the workspace and reports the bytes and files written in it for the attempt.
+     */
+    public void close(Workspace workspace, UUID attempt) {
+        Lease lease = leases.remove(workspace.getRoot());
+        try {
+            Usage usage = measure(workspace.getRoot());
+            log.debug("Workspace of attempt {} written {} bytes in {} files.", attempt, usage.bytes(), usage.files());
+            String location = lease != null && lease.root().equals(fallbackRoot) && !fallbackRoot.equals(root)
+                    ? FALLBACK
+                    : PRIMARY;
+            DistributionSummary.builder("moj.worker.workspace.written").baseUnit("bytes")
+                    .tag("location", location).register(meterRegistry).record(usage.bytes());
+            DistributionSummary.builder("moj.worker.workspace.files")
+                    .tag("location", location).register(meterRegistry).record(usage.files());
+            if (lease != null) {
+                lease.template().written().accumulateAndGet(usage.bytes(), Math::max);
+            }
+            workspace.close();
+        } catch (Exception ex) {
+            log.error("Failed to close workspace {}, ignoring.", workspace.getRoot());
+        } finally {
+            release(null, lease);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        templates.clear();
+        if (templatesRoot != null) {
+            delete(templatesRoot);
+        }
+    }
+
+    private Lease reserve(Template template) {
+        DataSize quota = mojServerProperties.getWorker().getWorkspace().getQuota();
+        if (quota == null) {
+            return new Lease(root, template, 0);
+        }
+        // estimate by the most written by a workspace of the assignment so far
+        long estimate = template.written().get();
+        long current = used.addAndGet(estimate);
+        if (current > quota.toBytes()) {
+            used.addAndGet(-estimate);
+            log.debug("Workspace quota of {} reached, {} bytes used by templates, falling back to {}.", quota,
+                    templateBytes.get(), fallbackRoot);
+            fallbacks.increment();
+            return new Lease(fallbackRoot, template, 0);
+        }
+        return new Lease(root, template, estimate);
+    }
+
+    private void release(Path base, Lease lease) {
+        if (base != null) {
+            leases.remove(base);
+            delete(base);
+        }
+        if (lease != null) {
+            used.addAndGet(-lease.reserved());
+        }
+    }
+
+    /**
+     * Returns the template for the assignment, with a reference the caller must release. Only one template per
+     * assignment is created at a time, others wait for it.
+     */
+    private Template getTemplate(UUID assignment, AssignmentDescriptor ad) throws IOException {
+        while (true) {
+            Template current = templates.get(assignment);
+            if (current != null && current.directory().equals(ad.getDirectory())
+                    && Files.isDirectory(current.root())) {
+                if (current.acquire()) {
+                    return current;
+                }
+                // replaced just now, get the new one
+                continue;
+            }
+            CompletableFuture<Template> result = new CompletableFuture<>();
+            CompletableFuture<Template> running = creating.putIfAbsent(assignment, result);
+            if (running != null) {
+                // it may be for another version of the assignment, check again once it is there
+                await(running);
+                continue;
+            }
+            try {
+                Template template = createTemplate(assignment, ad);
+                // one reference for the map, one for the caller
+                template.acquire();
+                Template replaced = templates.put(assignment, template);
+                result.complete(template);
+                if (replaced != null) {
+                    // workspaces hardlink or copy the template files, they keep working without it
+                    release(replaced);
+                }
+                return template;
+            } catch (IOException | RuntimeException e) {
+                result.completeExceptionally(e);
+                throw e;
+            } finally {
+                creating.remove(assignment, result);
+            }
+        }
+    }
+
+    private Template createTemplate(UUID assignment, AssignmentDescriptor ad) throws IOException {
+        Path template = Files.createTempDirectory(getTemplatesRoot(), assignment.toString());
+        long size;
+        try {
+            new BasicWorkspace(template, assignment, ad, null, null);
+            // templates are shared by all workspaces of the assignment
+            try (Stream<Path> walk = Files.walk(template)) {
+                walk.filter(Files::isRegularFile).forEach(f -> f.toFile().setWritable(false));
+            }
+            size = measure(template).bytes();
+        } catch (IOException e) {
+            delete(template);
+            throw e;
+        }
+        used.addAndGet(size);
+        templateBytes.addAndGet(size);
+        log.info("Created workspace template for assignment {}.", assignment);
+        // until a workspace has been measured assume it writes as much as the template holds
+        return new Template(assignment, ad.getDirectory(), template, size, new AtomicLong(size),
+                new AtomicInteger(1));
+    }
+
+    private void release(Template template) {
+        if (template.release()) {
+            delete(template.root());
+            used.addAndGet(-template.size());
+            templateBytes.addAndGet(-template.size());
+            log.info("Removed replaced workspace template for assignment {}.", template.assignment());
+        }
+    }
+
+    private static void await(CompletableFuture<Template> future) throws IOException {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Unable to create workspace template.", e.getCause());
+        }
+    }
+
+    private synchronized Path getTemplatesRoot() throws IOException {
+        if (templatesRoot == null) {
+            templatesRoot = Files.createTempDirectory(root, "workspace-templates");
+        }
+        return templatesRoot;
+    }
+
+    /**
+     * Counts the files written in the directory, files linked from a template are left out.
+     */
+    private static Usage measure(Path directory) throws IOException {
+        long bytes = 0;
+        long files = 0;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path p : walk.filter(Files::isRegularFile).toList()) {
+                if (linkCount(p) == 1) {
+                    bytes += Files.size(p);
+                    files++;
+                }
+            }
+        }
+        return new Usage(bytes, files);
+    }
+
+    private static int linkCount(Path p) throws IOException {
+        try {
+            return (Integer) Files.getAttribute(p, "unix:nlink");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            return 1;
+        }
+    }
+
+    private static Path validate(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        if (!Files.isDirectory(directory) || !Files.isWritable(directory)) {
+            throw new IllegalStateException("Workspace directory " + directory + " is not a writable directory.");
+        }
+        return directory.toAbsolutePath();
+    }
+
+    private static void delete(Path path) {
+        try (Stream<Path> walk = Files.walk(path)) {
+            walk.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            log.warn("Unable to delete {}.", path, e);
+        }
+    }
+
+    /**
+     * Counts the map and the workspaces being created from it as references, it is removed when there are none left.
+     */
+    private record Template(UUID assignment, Path directory, Path root, long size, AtomicLong written,
+            AtomicInteger references) {
+
+        /**
+         * @return false if the template was already removed.
+         */
+        boolean acquire() {
+            return references.getAndUpdate(n -> n == 0 ? 0 : n + 1) > 0;
+        }
+
+        /**
+         * @return true if this was the last reference.
+         */
+        boolean release() {
+            return references.decrementAndGet() == 0;
+        }
+    }
+
+    private record Lease(Path root, Template template, long reserved) {
+    }
+
+    private record Usage(long bytes, long files) {
     }
 }
@@ -132,6 +132,16 @@ function startSingleSession(args) {
 }
 
 // used from html
+function prepareAssignment(args) {
+    post(`/api/session/${args.sid}/assignment/${args.id}/prepare`)
+        .then(r => {
+                showInfo(`Asked workers to prepare assignment '${args.name}'.`)
+            },
+            () => {
+                showAlert(`Unable to prepare assignment '${args.name}'.`)
+            })
+}
+
 function startAssignment(args) {
     confirm(`Start assignment '${args.name}'?`).then(ok => {
         post(`/api/session/${args.sid}/assignment/${args.id}/start`)
@@ -213,6 +223,10 @@ function initStats() {
                 updateQueueStats(r.queueMetrics)
                 updateOperationStats(r.operationMetrics)
             })
+        get("/workers")
+            .then(r => {
+                updateWorkerReadiness(r)
+            })
     }
     window.setInterval(() => {
         fetchStats();
@@ -265,22 +279,61 @@ function updateOperationStats(data) {
     }
 }
 
+function updateWorkerReadiness(data) {
+    const $workers = $('#workers')
+    if ($workers) {
+        $workers.empty()
+        if (data.length === 0) {
+            return
+        }
+        const rowTemplate = (w, a, r, s) => {
+            return `<tr>
+                <td>${w}</td>
+                <td>${a}</td>
+                <td>${r}</td>
+                <td>${s}</td>
+            </tr>`
+        }
+        const ready = v => v.ready ? '<span class="fa fa-check text-success"></span>'
+            : `<span class="fa fa-times text-danger" title="${v.reason}"></span>`
+        const rows = data
+            .map(v => rowTemplate(v.worker, v.assignment, ready(v), v.seconds.toFixed(2))).join("\n")
+        let workersTable = $.parseHTML(
+            `<table class="table table-sm table-striped">
+              <thead>
+                <tr>
+                  <th scope="col">Worker</th>
+                  <th scope="col">Assignment</th>
+                  <th scope="col">Ready</th>
+                  <th scope="col">Prepare (s)</th>
+                </tr>
+              </thead>
+              <tbody>
+                ${rows}
+              </tbody>
+            </table>`)
+        $workers.append(workersTable)
+    }
+}
+
 function updateQueueStats(data) {
     const $stats = $('#stats')
     if ($stats) {
         $stats.empty()
-        const rowTemplate = (n, w, t, e, k) => {
+        const rowTemplate = (n, w, t, e, k, wt) => {
             return `<tr>
                 <td>${n}</td>
                 <td>${w}</td>
                 <td>${t}</td>
                 <td>${e}</td>
                 <td>${k}</td>
+                <td>${wt}</td>
             </tr>`
         }
+        const waitTime = v => v.waitMean == null ? '' : `${v.waitMean.toFixed(2)} / ${v.waitMax.toFixed(2)}`
         const rows = data
             .sort( sortAlpha )
-            .map(v => rowTemplate(v.name, v.count, v.added, v.expired, v.killed)).join("\n")
+            .map(v => rowTemplate(v.name, v.count, v.added, v.expired, v.killed, waitTime(v))).join("\n")
         let statsTable = $.parseHTML(
             `<table class="table table-sm table-striped">
               <thead>
@@ -290,6 +343,7 @@ function updateQueueStats(data) {
                   <th scope="col">Total</th>
                   <th scope="col">Expired</th>
                   <th scope="col">Killed</th>
+                  <th scope="col">Wait mean / max (s)</th>
                 </tr>
               </thead>
               <tbody>
@@ -0,0 +1,108 @@
+package nl.moj.common.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.difflib.patch.PatchFailedException;
+
+import nl.moj.common.messages.JMSFile;
+
+public class SourceDiffUtilsTest {
+
+    private static final String PATH = "src/main/java/Assignment.java";
+    private static final String ORIGINAL = lines(50, "\n");
+
+    @Test
+    public void shouldSendSmallChangeAsDiff() throws Exception {
+        String content = ORIGINAL.replace("line 25", "changed");
+
+        JMSFile file = SourceDiffUtils.source(PATH, content, ORIGINAL);
+
+        assertThat(file.isDiff()).isTrue();
+        assertThat(file.getContent().length()).isLessThan(content.length());
+        assertThat(SourceDiffUtils.content(file, ORIGINAL)).isEqualTo(content);
+    }
+
+    @Test
+    public void shouldSendEmptyFile() throws Exception {
+        JMSFile file = SourceDiffUtils.source(PATH, "", ORIGINAL);
+
+        assertThat(file.isDiff()).isFalse();
+        assertThat(SourceDiffUtils.content(file, ORIGINAL)).isEmpty();
+    }
+
+    @Test
+    public void shouldKeepMissingTrailingNewline() throws Exception {
+        String content = ORIGINAL.replace("line 25", "changed").stripTrailing();
+
+        JMSFile file = SourceDiffUtils.source(PATH, content, ORIGINAL);
+
+        assertThat(file.isDiff()).isTrue();
+        assertThat(SourceDiffUtils.content(file, ORIGINAL)).isEqualTo(content);
+    }
+
+    @Test
+    public void shouldKeepCarriageReturns() throws Exception {
+        String original = lines(50, "\r\n");
+        String content = original.replace("line 25", "changed");
+
+        JMSFile file = SourceDiffUtils.source(PATH, content, original);
+
+        assertThat(file.isDiff()).isTrue();
+        assertThat(SourceDiffUtils.content(file, original)).isEqualTo(content).contains("\r\n");
+    }
+
+    @Test
+    public void shouldSendContentShorterThanOriginal() throws Exception {
+        String content = lines(40, "\n");
+
+        JMSFile file = SourceDiffUtils.source(PATH, content, ORIGINAL);
+
+        assertThat(file.isDiff()).isTrue();
+        assertThat(SourceDiffUtils.content(file, ORIGINAL)).isEqualTo(content);
+    }
+
+    @Test
+    public void shouldRejectDiffNotMatchingHash() {
+        JMSFile diff = SourceDiffUtils.source(PATH, ORIGINAL.replace("line 25", "changed"), ORIGINAL);
+        JMSFile file = JMSFile.builder()
+                .type(diff.getType())
+                .path(diff.getPath())
+                .content(diff.getContent())
+                .encoding(diff.getEncoding())
+                .sha256(SourceDiffUtils.sha256("something else"))
+                .build();
+
+        assertThatThrownBy(() -> SourceDiffUtils.content(file, ORIGINAL))
+                .isInstanceOf(PatchFailedException.class)
+                .hasMessageContaining("does not match its hash");
+    }
+
+    @Test
+    public void shouldRejectDiffAgainstOtherOriginal() {
+        JMSFile file = SourceDiffUtils.source(PATH, ORIGINAL.replace("line 25", "changed"), ORIGINAL);
+
+        assertThatThrownBy(() -> SourceDiffUtils.content(file, ORIGINAL.replace("line 3\"", "other\"")))
+                .isInstanceOf(PatchFailedException.class);
+    }
+
+    @Test
+    public void shouldRejectDiffWhenOriginalIsMissing() {
+        JMSFile file = SourceDiffUtils.source(PATH, ORIGINAL.replace("line 25", "changed"), ORIGINAL);
+
+        // the worker patches an empty original when it does not have the file
+        assertThatThrownBy(() -> SourceDiffUtils.content(file, ""))
+                .isInstanceOf(PatchFailedException.class);
+    }
+
+    private static String lines(int count, String separator) {
+        return IntStream.range(0, count)
+                .mapToObj(i -> "    System.out.println(\"line " + i + "\");" + separator)
+                .collect(Collectors.joining());
+    }
+}
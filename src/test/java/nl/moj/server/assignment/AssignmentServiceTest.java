@@ -20,10 +20,19 @@ import static nl.moj.server.TestUtil.classpathResourceToPath;
 import static org.assertj.core.api.Assertions.assertThat;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Instant;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
@@ -31,6 +40,8 @@ import nl.moj.common.assignment.descriptor.AssignmentDescriptor;
 import nl.moj.server.DbUtil;
 import nl.moj.server.assignment.model.Assignment;
 import nl.moj.server.assignment.service.AssignmentService;
+import nl.moj.server.runtime.model.AssignmentFile;
+import nl.moj.server.runtime.model.AssignmentFileType;
 
 @SpringBootTest
 public class AssignmentServiceTest {
@@ -104,4 +115,42 @@ public class AssignmentServiceTest {
             assertThat(d.getSystemProperties()).isNotNull();
         });
     }
+
+    @Test
+    public void shouldCacheAssignmentDescriptorUntilChanged(@TempDir Path dir) throws Exception {
+        Path descriptor = dir.resolve("assignment.yaml");
+        try (Stream<Path> files = Files.walk(classpathResourceToPath("/assignments"))) {
+            Files.copy(files.filter(f -> f.getFileName().toString().equals("assignment.yaml")).findFirst()
+                    .orElseThrow(), descriptor);
+        }
+
+        AssignmentDescriptor first = assignmentService.resolveAssignmentDescriptor(descriptor.toString());
+        assertThat(assignmentService.resolveAssignmentDescriptor(descriptor.toString())).isSameAs(first);
+
+        Files.writeString(descriptor, "\n# changed\n", StandardOpenOption.APPEND);
+        Files.setLastModifiedTime(descriptor, FileTime.from(Instant.now().plusSeconds(10)));
+
+        AssignmentDescriptor changed = assignmentService.resolveAssignmentDescriptor(descriptor.toString());
+        assertThat(changed).isNotSameAs(first);
+        assertThat(changed.getName()).isEqualTo(first.getName());
+    }
+
+    @Test
+    public void shouldShareAssignmentFileContent() throws Exception {
+        Assignment assignment = assignmentService.updateAssignments(classpathResourceToPath("/assignments"),
+                "assignments").get(0);
+
+        List<AssignmentFile> files = assignmentService.getAssignmentFiles(assignment);
+        AssignmentFile file = files.stream()
+                .filter(f -> f.getFileType() == AssignmentFileType.EDIT)
+                .findFirst()
+                .orElseThrow();
+        AssignmentFile copy = file.toBuilder().build();
+
+        assertThat(copy.getContent()).isSameAs(file.getContent())
+                .isEqualTo(Files.readAllBytes(file.getAbsoluteFile()));
+        assertThat(file.getContentHash()).isEqualTo(
+                HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(file.getContent())));
+        assertThat(files).allSatisfy(f -> assertThat(f.getMediaType()).isNotNull());
+    }
 }
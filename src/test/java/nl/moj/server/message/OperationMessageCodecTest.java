@@ -0,0 +1,164 @@
+package nl.moj.server.message;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import javax.jms.BytesMessage;
+import javax.jms.ConnectionFactory;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jms.core.JmsTemplate;
+
+import lombok.extern.slf4j.Slf4j;
+import nl.moj.common.messages.JMSFile;
+import nl.moj.common.messages.JMSSubmitRequest;
+import nl.moj.common.messages.JMSTestCase;
+import nl.moj.common.messages.JMSTestCaseResult;
+import nl.moj.common.messages.JMSTestResponse;
+import nl.moj.common.messages.MessageCodec;
+import nl.moj.common.messages.OperationMessageConverter;
+import nl.moj.server.TestUtil;
+
+/**
+ * Compares the size and (de)serialization time of operation messages in the available codecs. The results are
+ * logged, only the size is asserted as timings are too noisy on build machines.
+ */
+@SpringBootTest
+@Slf4j
+public class OperationMessageCodecTest {
+
+    private static final String DESTINATION = "operation_codec_test";
+    private static final int ITERATIONS = 200;
+
+    @Autowired
+    private OperationMessageConverter messageConverter;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @Test
+    public void shouldRoundTripOperationMessagesInAllCodecs() throws Exception {
+        JmsTemplate jmsTemplate = new JmsTemplate(connectionFactory);
+        jmsTemplate.setMessageConverter(messageConverter);
+        jmsTemplate.setReceiveTimeout(10000);
+
+        for (MessageCodec codec : MessageCodec.values()) {
+            JMSSubmitRequest request = submitRequest();
+            jmsTemplate.send(DESTINATION, messageConverter.creator(request, codec));
+            JMSSubmitRequest received = (JMSSubmitRequest) jmsTemplate.receiveAndConvert(DESTINATION);
+
+            assertThat(received).isNotNull();
+            assertThat(received.getAttempt()).isEqualTo(request.getAttempt());
+            assertThat(received.getSources()).extracting(JMSFile::getContent)
+                    .containsExactlyElementsOf(request.getSources().stream().map(JMSFile::getContent).toList());
+
+            JMSTestResponse response = testResponse();
+            jmsTemplate.send(DESTINATION, messageConverter.creator(response, codec));
+            JMSTestResponse receivedResponse = (JMSTestResponse) jmsTemplate.receiveAndConvert(DESTINATION);
+
+            assertThat(receivedResponse).isNotNull();
+            assertThat(receivedResponse.getEnded()).isEqualTo(response.getEnded());
+            assertThat(receivedResponse.getTestCaseResults()).extracting(JMSTestCaseResult::getOutput)
+                    .containsExactlyElementsOf(
+                            response.getTestCaseResults().stream().map(JMSTestCaseResult::getOutput).toList());
+        }
+    }
+
+    @Test
+    public void shouldSendSmallerBinaryMessages() {
+        JmsTemplate jmsTemplate = new JmsTemplate(connectionFactory);
+        jmsTemplate.execute(session -> {
+            for (Object payload : List.of(submitRequest(), testResponse())) {
+                long json = benchmark(session, payload, MessageCodec.JSON);
+                long cbor = benchmark(session, payload, MessageCodec.CBOR);
+                assertThat(cbor).isLessThan(json);
+            }
+            return null;
+        });
+    }
+
+    private long benchmark(Session session, Object payload, MessageCodec codec) throws JMSException {
+        long size = 0;
+        long write = 0;
+        long read = 0;
+        for (int i = 0; i < ITERATIONS; i++) {
+            long start = System.nanoTime();
+            Message message = messageConverter.toMessage(payload, session, codec);
+            write += System.nanoTime() - start;
+            // make the body readable, like it is for a received message
+            if (message instanceof BytesMessage bm) {
+                bm.reset();
+                size = bm.getBodyLength();
+            } else {
+                size = ((TextMessage) message).getText().getBytes(StandardCharsets.UTF_8).length;
+            }
+            start = System.nanoTime();
+            messageConverter.fromMessage(message);
+            read += System.nanoTime() - start;
+        }
+        log.info("{} as {}: {} bytes, write {} us, read {} us", payload.getClass().getSimpleName(), codec.getId(),
+                size, write / ITERATIONS / 1000, read / ITERATIONS / 1000);
+        return size;
+    }
+
+    private JMSSubmitRequest submitRequest() {
+        List<JMSFile> sources = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(TestUtil.classpathResourceToPath("/runtime/assignments"))) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".java")).toList()) {
+                sources.add(JMSFile.builder()
+                        .type(JMSFile.Type.SOURCE)
+                        .path(file.getFileName().toString())
+                        .content(Files.readString(file))
+                        .build());
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return JMSSubmitRequest.builder()
+                .attempt(UUID.randomUUID())
+                .assignment(UUID.randomUUID())
+                .sources(sources)
+                .tests(IntStream.range(0, 3)
+                        .mapToObj(i -> JMSTestCase.builder().testCase(UUID.randomUUID()).name("Test" + i).build())
+                        .toList())
+                .build();
+    }
+
+    private JMSTestResponse testResponse() {
+        String output = IntStream.range(0, 2000)
+                .mapToObj(i -> "Iteration " + i + ": expected <" + i * 31 + "> but was <" + i * 17 + ">")
+                .collect(Collectors.joining("\n"));
+        return JMSTestResponse.builder()
+                .attempt(UUID.randomUUID())
+                .worker("worker")
+                .traceId("trace")
+                .started(Instant.now())
+                .ended(Instant.now())
+                .testCaseResults(IntStream.range(0, 3)
+                        .mapToObj(i -> JMSTestCaseResult.builder()
+                                .testCase(UUID.randomUUID())
+                                .started(Instant.now())
+                                .ended(Instant.now())
+                                .success(false)
+                                .output(output)
+                                .build())
+                        .toList())
+                .build();
+    }
+}
@@ -0,0 +1,50 @@
+package nl.moj.server.runtime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import nl.moj.server.competition.model.CompetitionAssignment;
+import nl.moj.server.message.service.AssignmentPrepareService;
+import nl.moj.server.message.service.AssignmentPrepareService.WorkerReadiness;
+
+@SpringBootTest
+public class AssignmentPrepareTest extends BaseRuntimeTest {
+
+    @Autowired
+    private AssignmentPrepareService assignmentPrepareService;
+
+    @Test
+    public void shouldReportWorkerReadyAfterPreparing() throws Exception {
+        CompetitionAssignment oa = getAssignment("parallel");
+
+        assignmentPrepareService.prepare(oa.getAssignment());
+
+        assertThat(awaitReadiness(Duration.ofSeconds(60))).isTrue();
+        assertThat(assignmentPrepareService.getReadiness()).hasSize(1)
+                .first()
+                .satisfies(r -> {
+                    assertThat(r.isReady()).as(r.getReason()).isTrue();
+                    assertThat(r.getAssignment()).isEqualTo("parallel");
+                });
+        assertThat(assignmentPrepareService.getReadiness()).extracting(WorkerReadiness::getWorker)
+                .doesNotContainNull();
+    }
+
+    // the response can be consumed by either operation response listener, so wait for its effect
+    private boolean awaitReadiness(Duration timeout) throws InterruptedException {
+        Instant deadline = Instant.now().plus(timeout);
+        while (assignmentPrepareService.getReadiness().isEmpty()) {
+            if (Instant.now().isAfter(deadline)) {
+                return false;
+            }
+            Thread.sleep(100);
+        }
+        return true;
+    }
+}
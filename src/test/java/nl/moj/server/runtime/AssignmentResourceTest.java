@@ -1,9 +1,19 @@
 package nl.moj.server.runtime;
 
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
 import org.springframework.test.web.servlet.result.MockMvcResultMatchers;
@@ -44,4 +54,50 @@ public class AssignmentResourceTest extends BaseRuntimeTest {
                 .getName(), "assets/images/unknown.png"))
                 .andExpect(MockMvcResultMatchers.status().isNotFound());
     }
+
+    @Test
+    public void shouldNotSendUnmodifiedAssignmentContent() throws Exception {
+        CompetitionAssignment oa = getAssignment("parallel");
+
+        String etag = mockMvc.perform(MockMvcRequestBuilders.get("/api/assignment/{id}/content", oa.getAssignment()
+                .getUuid()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().exists(HttpHeaders.ETAG))
+                .andReturn()
+                .getResponse()
+                .getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/assignment/{id}/content", oa.getAssignment()
+                .getUuid())
+                .header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(MockMvcResultMatchers.status().isNotModified());
+    }
+
+    @Test
+    public void shouldSendAssignmentContentWithoutSolution() throws Exception {
+        CompetitionAssignment oa = getAssignment("parallel");
+
+        byte[] content = mockMvc.perform(MockMvcRequestBuilders.get("/api/assignment/{id}/content", oa.getAssignment()
+                .getUuid()))
+                .andExpect(MockMvcResultMatchers.status().isOk())
+                .andExpect(MockMvcResultMatchers.header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+                .andReturn()
+                .getResponse()
+                .getContentAsByteArray();
+
+        List<String> entries = new ArrayList<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(content))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                entries.add(entry.getName());
+            }
+        }
+        assertThat(entries).contains("assignment.yaml", "src/main/java/Assignment.java")
+                .doesNotContain("assets/solution/Assignment.java");
+
+        mockMvc.perform(MockMvcRequestBuilders.get("/api/assignment/{id}/content", oa.getAssignment()
+                .getUuid())
+                .header(HttpHeaders.RANGE, "bytes=10-"))
+                .andExpect(MockMvcResultMatchers.status().isPartialContent())
+                .andExpect(MockMvcResultMatchers.content().bytes(Arrays.copyOfRange(content, 10, content.length)));
+    }
 }
@@ -16,28 +16,49 @@
 */
 package nl.moj.server.runtime;
 
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
 import java.time.Duration;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Stream;
 
 import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
 
+import nl.moj.common.config.properties.MojServerProperties;
+import nl.moj.common.messages.JMSTestCaseResult;
+import nl.moj.common.messages.JMSTestProgressResponse;
 import nl.moj.server.assignment.service.AssignmentService;
 import nl.moj.server.competition.model.CompetitionAssignment;
 import nl.moj.server.competition.service.CompetitionServiceException;
 import nl.moj.server.compiler.model.CompileAttempt;
+import nl.moj.server.message.service.MessageService;
 import nl.moj.server.runtime.model.ActiveAssignment;
 import nl.moj.server.submit.SubmitFacade;
 import nl.moj.server.submit.model.SourceMessage;
 import nl.moj.server.submit.model.SubmitAttempt;
 import nl.moj.server.test.model.TestAttempt;
+import nl.moj.server.test.model.TestCase;
+import nl.moj.server.test.repository.TestAttemptRepository;
+import nl.moj.server.test.service.TestService;
+import nl.moj.server.util.JMSResponseHelper;
+import nl.moj.server.util.TransactionHelper;
+import nl.moj.worker.java.compile.ForkedCompileEngine;
 
 /**
  * During integration testing this class is executed twice, one for sequential and one for parallel.
@@ -58,6 +79,24 @@ public class AssignmentSubmitTest extends BaseRuntimeTest {
     @Autowired
     private AssignmentService assignmentService;
 
+    @Autowired
+    private MojServerProperties mojServerProperties;
+
+    @Autowired
+    private TestService testService;
+
+    @Autowired
+    private TestAttemptRepository testAttemptRepository;
+
+    @Autowired
+    private TransactionHelper trx;
+
+    @SpyBean
+    private MessageService messageService;
+
+    @SpyBean
+    private ForkedCompileEngine forkedCompileEngine;
+
     private static Stream<String> assignments() {
         return Stream.of("sequential", "parallel");
     }
@@ -119,6 +158,112 @@ public class AssignmentSubmitTest extends BaseRuntimeTest {
         assertFinalScore(src).isEqualTo(0);
     }
 
+    @ParameterizedTest
+    @MethodSource("assignments")
+    public void shouldSupersedePendingTestAttempt(String assignment) {
+        startSelectedAssignment(assignment);
+        SourceMessage src = createSourceMessageWithNoTimeout();
+        TestAttempt superseded = submitFacade.registerTestRequest(src, getPrincipal(getUser()));
+        TestAttempt testAttempt = doTest(src);
+
+        assertSuccess(testAttempt);
+        superseded = refresh(superseded);
+        Assertions.assertThat(superseded.getDateTimeEnd()).isNotNull();
+        Assertions.assertThat(superseded.getAborted()).isTrue();
+        Assertions.assertThat(superseded.getReason()).isEqualTo(JMSResponseHelper.SUPERSEDED);
+    }
+
+    @Test
+    public void shouldSubmitSequentialAssignmentInOneTestJvm() throws Exception {
+        mojServerProperties.getWorker().getTestRunner().setBatchSequential(true);
+        try {
+            startSelectedAssignment("sequential");
+            SourceMessage src = createSourceMessageWithNoTimeout();
+            SubmitAttempt submitAttempt = doSubmit(src);
+
+            assertSuccess(submitAttempt);
+            assertFinalScore(submitAttempt).isGreaterThan(0);
+        } finally {
+            mojServerProperties.getWorker().getTestRunner().setBatchSequential(false);
+        }
+    }
+
+    @Test
+    public void shouldTimeoutSequentialAssignmentInOneTestJvm() throws Exception {
+        mojServerProperties.getWorker().getTestRunner().setBatchSequential(true);
+        try {
+            startSelectedAssignment("sequential");
+            Duration timeout = assignmentService
+                    .resolveTestAbortTimout(competitionRuntime.getActiveAssignment(null).getAssignment(), 1);
+            SourceMessage src = createSourceMessageWithLongTimeout(timeout);
+            TestAttempt testAttempt = doTest(src);
+
+            assertTimeout(testAttempt);
+        } finally {
+            mojServerProperties.getWorker().getTestRunner().setBatchSequential(false);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource("assignments")
+    public void shouldTestWithSourcesSentAsDiffs(String assignment) {
+        mojServerProperties.getMessaging().setSourceDiffs(true);
+        try {
+            startSelectedAssignment(assignment);
+            SourceMessage src = createSourceMessageWithNoTimeout();
+            TestAttempt testAttempt = doTest(src);
+
+            assertSuccess(testAttempt);
+        } finally {
+            mojServerProperties.getMessaging().setSourceDiffs(false);
+        }
+    }
+
+    @Test
+    public void shouldCompileTeamSourcesWithErrorsOnce() throws Exception {
+        startSelectedAssignment("parallel");
+        SourceMessage src = createSourceMessageWithNoTimeout();
+        src.getSources().replaceAll((file, content) -> content.replace("return true;", "return nothing;"));
+        CompileAttempt compileAttempt = doCompile(src);
+
+        trx.required(() -> {
+            CompileAttempt r = refresh(compileAttempt);
+            Assertions.assertThat(r.getSuccess()).isFalse();
+            Assertions.assertThat(r.getTimeout()).isFalse();
+            Assertions.assertThat(r.getCompilerOutput()).contains("nothing");
+        });
+        // compile baselines are built in a directory of their own
+        verify(forkedCompileEngine, times(1)).compile(
+                argThat(job -> !job.getDirectory().getFileName().toString().startsWith(".tmp-")), any(), any());
+    }
+
+    @Test
+    public void shouldIgnoreTestProgressAfterFinalResponse() {
+        startSelectedAssignment("parallel");
+        SourceMessage src = createSourceMessageWithNoTimeout();
+        TestAttempt testAttempt = doTest(src);
+        assertSuccess(testAttempt);
+        Mockito.clearInvocations(messageService);
+
+        // a partial result handled after the final response of its attempt
+        UUID testCase = trx.required(() -> testAttemptRepository.findByUuid(testAttempt.getUuid())
+                .getTestCases().get(0).getUuid());
+        testService.receiveTestProgressResponse(JMSTestProgressResponse.builder()
+                .attempt(testAttempt.getUuid())
+                .testCaseResult(JMSTestCaseResult.builder()
+                        .testCase(testCase)
+                        .started(Instant.now())
+                        .ended(Instant.now())
+                        .success(false)
+                        .output("late")
+                        .build())
+                .build());
+
+        assertSuccess(testAttempt);
+        verify(messageService, never()).sendTestFeedback(any(TestCase.class));
+        verify(messageService, never()).sendTestFeedback(any(TestAttempt.class), any());
+    }
+
     private SourceMessage createSourceMessageWithLongTimeout(Duration timeout) {
         ActiveAssignment state = competitionRuntime.getActiveAssignment(null);
 
@@ -73,7 +73,7 @@ public class ExecutionOrderAssignmentTest extends BaseRuntimeTest {
     }
 
     @Test
-    public void sequentialExecutionShouldHaveNoOverlappingExecutionWindows() {
+    public void sequentialExecutionShouldHaveNoOverlappingExecutionWindowsWithinAnAttempt() {
 
         Team team1 = getTeam();
         User user1 = getUser();
@@ -93,22 +93,24 @@ public class ExecutionOrderAssignmentTest extends BaseRuntimeTest {
             SourceMessage src1 = createWithDelay("100", state);
             SourceMessage src2 = createWithDelay("50", state);
 
+            // both attempts run at the same time and share the worker, allow each the time of both
             CompletableFuture<List<TestAttempt>> prepareForSubmit = CompletableFutures.allOf(
-                    doTest(src1, user1, Duration.ofSeconds(5)),
-                    doTest(src2, user2, Duration.ofSeconds(5)));
+                    doTest(src1, user1, timeout.multipliedBy(2)),
+                    doTest(src2, user2, timeout.multipliedBy(2)));
             // run them all at once and wait for the results.
             List<TestAttempt> results = prepareForSubmit.get(timeout.plusSeconds(20).toSeconds(), TimeUnit.SECONDS);
 
-            // sequential execution means just a single completable future can run at any given time
-            // this means there is no guarantee in the order, but none will run in the same time.
+            // sequential execution means the compile and tests of an attempt run one at a time,
+            // attempts of different teams are free to run at the same time.
             TestAttempt t1result = findSubmitResultByTeam(results, team1);
             TestAttempt t2result = findSubmitResultByTeam(results, team2);
 
             assertThat(t1result).isNotNull();
             assertThat(t2result).isNotNull();
 
-            // test that there is no overlap in execution windows.
-            assertNoOverlappingExecutionWindows(t1result, t2result);
+            // test that there is no overlap in execution windows of an attempt.
+            assertNoOverlappingExecutionWindows(t1result);
+            assertNoOverlappingExecutionWindows(t2result);
 
         } catch (Exception e) {
             Assertions.fail("Caught unexpected exception.", e);
@@ -11,7 +11,9 @@ import org.springframework.jms.annotation.JmsListener;
 import org.springframework.stereotype.Service;
 
 import nl.moj.common.messages.JMSResponse;
+import nl.moj.common.messages.JMSTestProgressResponse;
 import nl.moj.server.compiler.service.CompileService;
+import nl.moj.server.message.service.AssignmentPrepareService;
 import nl.moj.server.message.service.JmsMessageListener;
 import nl.moj.server.submit.service.SubmitService;
 import nl.moj.server.test.service.TestService;
@@ -22,8 +24,9 @@ public class TestJmsListener extends JmsMessageListener {
 
     private final Map<UUID, CountDownLatch> latches = new ConcurrentHashMap<>();
 
-    public TestJmsListener(SubmitService submitService, CompileService compileService, TestService testService) {
-        super(submitService, compileService, testService);
+    public TestJmsListener(SubmitService submitService, CompileService compileService, TestService testService,
+            AssignmentPrepareService assignmentPrepareService) {
+        super(submitService, compileService, testService, assignmentPrepareService);
     }
 
     public void reset() {
@@ -36,7 +39,10 @@ public class TestJmsListener extends JmsMessageListener {
         try {
             super.receiveOperationResponse(response);
         } finally {
-            countDown(response.getAttempt());
+            // partial results are followed by the final response
+            if (!(response instanceof JMSTestProgressResponse)) {
+                countDown(response.getAttempt());
+            }
         }
 
     }
@@ -0,0 +1,84 @@
+package nl.moj.worker;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+public class KeyedSerialExecutorTest {
+
+    @Test
+    public void shouldRunTasksInOrderPerKey() {
+        ExecutorService delegate = Executors.newFixedThreadPool(4);
+        try {
+            KeyedSerialExecutor executor = new KeyedSerialExecutor(delegate, 2);
+            List<Integer> ran = new CopyOnWriteArrayList<>();
+
+            CompletableFuture.allOf(IntStream.range(0, 20)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> ran.add(i), executor.lane("attempt")))
+                    .toArray(CompletableFuture[]::new)).join();
+
+            assertThat(ran).isEqualTo(IntStream.range(0, 20).boxed().toList());
+        } finally {
+            delegate.shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldRunRejectedTasksOnCurrentThread() throws Exception {
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        AtomicBoolean rejecting = new AtomicBoolean();
+        try {
+            KeyedSerialExecutor executor = new KeyedSerialExecutor(task -> {
+                if (rejecting.get()) {
+                    throw new RejectedExecutionException("Shutting down.");
+                }
+                pool.execute(task);
+            }, 1);
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            List<Integer> ran = new CopyOnWriteArrayList<>();
+
+            CompletableFuture<Void> first = CompletableFuture.runAsync(() -> {
+                started.countDown();
+                await(release);
+                ran.add(0);
+            }, executor.lane("attempt"));
+            started.await();
+            // queued behind the first task, scheduled by its thread once it is done
+            List<CompletableFuture<Void>> queued = IntStream.range(1, 5)
+                    .mapToObj(i -> CompletableFuture.runAsync(() -> ran.add(i), executor.lane("attempt")))
+                    .toList();
+            rejecting.set(true);
+            release.countDown();
+
+            CompletableFuture.allOf(queued.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+            first.get(5, TimeUnit.SECONDS);
+            assertThat(ran).containsExactly(0, 1, 2, 3, 4);
+
+            // submitted while the executor rejects, runs right away
+            CompletableFuture.runAsync(() -> ran.add(5), executor.lane("other")).get(5, TimeUnit.SECONDS);
+            assertThat(ran).endsWith(5);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
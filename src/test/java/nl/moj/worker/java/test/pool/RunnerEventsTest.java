@@ -0,0 +1,52 @@
+package nl.moj.worker.java.test.pool;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Base64;
+
+import org.junit.jupiter.api.Test;
+
+import nl.moj.common.messages.JMSTestMethodResult;
+import nl.moj.worker.java.test.TestMethodOutput;
+
+public class RunnerEventsTest {
+
+    @Test
+    public void shouldDecodeMethodResult() {
+        String name = "[0] a\tb\nDONE\t0\t0\t0";
+
+        TestMethodOutput result = RunnerEvents.methodResult(RunnerEvents.parse(
+                "RESULT\t" + encode(name) + "\tFAILURE\t12\t" + encode("expected") + "\t")).orElseThrow();
+
+        assertThat(result.getName()).isEqualTo(name);
+        assertThat(result.getStatus()).isEqualTo(JMSTestMethodResult.Status.FAILURE);
+        assertThat(result.getDuration()).isEqualTo(Duration.ofMillis(12));
+        assertThat(result.getMessage()).isEqualTo("expected");
+        assertThat(result.getTrace()).isNull();
+    }
+
+    @Test
+    public void shouldSkipMalformedMethodResult() {
+        assertThat(RunnerEvents.methodResult(RunnerEvents.parse("RESULT\ttest"))).isEmpty();
+        assertThat(RunnerEvents.methodResult(RunnerEvents.parse("RESULT\tdGVzdA==\tBROKEN\t12\t\t"))).isEmpty();
+        assertThat(RunnerEvents.methodResult(RunnerEvents.parse("RESULT\tdGVzdA==\tSUCCESS\tx\t\t"))).isEmpty();
+        assertThat(RunnerEvents.methodResult(RunnerEvents.parse("RESULT\t%%%\tSUCCESS\t12\t\t"))).isEmpty();
+    }
+
+    @Test
+    public void shouldSkipMalformedData() {
+        assertThat(RunnerEvents.data(RunnerEvents.parse("OUT"))).isEmpty();
+        assertThat(RunnerEvents.data(RunnerEvents.parse("OUT\t%%%"))).isEmpty();
+    }
+
+    @Test
+    public void shouldReturnEmptyMissingField() {
+        assertThat(RunnerEvents.field(RunnerEvents.parse("DONE"), 1)).isEmpty();
+    }
+
+    private static String encode(String value) {
+        return Base64.getEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}